@@ -0,0 +1,10 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Runs the {@link DirectoryBenchmark} from eight threads, competing for pooled connections.
+ */
+@Threads(8)
+public class ConcurrentBenchmark extends DirectoryBenchmark {
+}
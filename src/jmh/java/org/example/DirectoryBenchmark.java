@@ -0,0 +1,134 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Benchmarks of the hot paths of {@link LdapAdapter} and {@link ApplicationDomain},
+ * run against the embedded directory server (see {@link LocalLdapServer}).
+ * <p/>
+ * Measures average latency per operation, as seen by the calling thread. Subclasses
+ * determine the number of concurrently calling threads, so that contention on the
+ * connection pool shows up as a difference between them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+public abstract class DirectoryBenchmark {
+
+    static final String USER_ID = "tester"; // See LocalLdapServer.java
+    static final String GROUP = ApplicationDomain.ADMINISTRATORS_GROUP;
+    static final String ARCHIVE = "Benchmark";
+    static final String ROLE = ApplicationDomain.USER_ROLE;
+
+    private final AtomicLong roleCounter = new AtomicLong();
+
+    private LocalLdapServer server;
+    private LdapAdapter adapter;
+    private ApplicationDomain domain;
+    private Dn userDn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new LocalLdapServer();
+        server.start();
+
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See LocalLdapServer.java
+                //
+                // Do not let caching hide the cost of the directory round trip
+                LdapAdapter.LDAP_CACHE_SIZE, "0"
+        );
+        adapter = new LdapAdapter(adapterConfig);
+
+        Map<String, String> templates = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+        domain = new ApplicationDomain(templates, adapter);
+        userDn = new Dn(domain.findUserDn(USER_ID));
+
+        // An archive, with the user in a role
+        if (!domain.archiveExists(ARCHIVE)) {
+            domain.createArchive(ARCHIVE);
+        }
+        domain.assignUserToRole(USER_ID, ROLE, ARCHIVE);
+
+        // The user as a member of a global group
+        DefaultEntry member = new DefaultEntry(
+                "cn=" + USER_ID + ",ou=" + GROUP + ",ou=Groups,dc=test",
+                "objectClass: dsGroupMember",
+                "cn: " + USER_ID,
+                "memberObject: " + userDn.getName()
+        );
+        adapter.createObject(member);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (null != domain) {
+            domain.close();
+        }
+        if (null != adapter) {
+            adapter.close();
+        }
+        if (null != server) {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public String findUserDn() throws Exception {
+        return domain.findUserDn(USER_ID);
+    }
+
+    @Benchmark
+    public String findObjectByDn() throws Exception {
+        return domain.findObjectByDn(userDn);
+    }
+
+    @Benchmark
+    public boolean isMemberOfGlobalGroup() throws Exception {
+        return domain.isMemberOfGlobalGroup(USER_ID, GROUP);
+    }
+
+    @Benchmark
+    public Collection<String> getUsersInRole() throws Exception {
+        return domain.getUsersInRole(ROLE, ARCHIVE);
+    }
+
+    /**
+     * Assigns the user to a new role each time, so that every call writes to the directory.
+     */
+    @Benchmark
+    public String assignUserToRole() throws Exception {
+        return domain.assignUserToRole(USER_ID, "Role" + roleCounter.incrementAndGet(), ARCHIVE);
+    }
+}
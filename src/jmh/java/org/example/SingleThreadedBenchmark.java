@@ -0,0 +1,10 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Runs the {@link DirectoryBenchmark} from a single thread, i.e. without contention.
+ */
+@Threads(1)
+public class SingleThreadedBenchmark extends DirectoryBenchmark {
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.filter.FilterEncoder;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of assembling distinguished names and search requests, which happens
+ * on every call into {@link ApplicationDomain}. No directory is involved (the
+ * adapter never connects, since no operation is carried out).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+public class TemplateBenchmark {
+
+    static final String TEMPLATE = "cn=%s,ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test";
+    static final String USER_DN = "uid=tester,ou=Members,dc=test";
+
+    private DnTemplate template;
+    private LdapAdapter adapter;
+    private Dn participationDn;
+    private Dn groupDn;
+
+    @Setup
+    public void setUp() throws Exception {
+        template = DnTemplate.compile(TEMPLATE, 3);
+
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See LocalLdapServer.java
+        );
+        adapter = new LdapAdapter(adapterConfig);
+
+        participationDn = template.expand("tester", "User", "Benchmark");
+        groupDn = new Dn("ou=Administrators,ou=Groups,dc=test");
+    }
+
+    @TearDown
+    public void tearDown() {
+        adapter.close();
+    }
+
+    /**
+     * Composes the text of the distinguished name, which is then parsed by the LDAP API.
+     */
+    @Benchmark
+    public Dn composeAndParse() throws Exception {
+        return new Dn(LdapAdapter.compose(TEMPLATE, "tester", "User", "Benchmark"));
+    }
+
+    @Benchmark
+    public Dn expandTemplate() throws Exception {
+        return template.expand("tester", "User", "Benchmark");
+    }
+
+    /**
+     * Assembles a base scope search for an (already expanded) distinguished name, as
+     * when checking whether an object exists. The filter is parsed by the LDAP API.
+     */
+    @Benchmark
+    public SearchRequest searchForDn() throws Exception {
+        return adapter.searchForDn(participationDn, "(objectClass=*)", SchemaConstants.NO_ATTRIBUTE);
+    }
+
+    /**
+     * Assembles a one level search for the membership of a user, encoding the
+     * distinguished name of the user into the filter, which is then parsed.
+     */
+    @Benchmark
+    public SearchRequest shallowSearchWithFilter() throws Exception {
+        String filter = "(&(objectClass=dsGroupMember)(memberObject=" + FilterEncoder.encodeFilterValue(USER_DN) + "))";
+        return adapter.shallowSearchWithFilter(groupDn, filter, SchemaConstants.NO_ATTRIBUTE);
+    }
+}
@@ -1,12 +1,13 @@
 package org.example;
 
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.entry.Entry;
-import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
-import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.filter.FilterEncoder;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.Rdn;
@@ -14,13 +15,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 
 /**
  * Manages a connection to an LDAP directory service and executes
  * queries and updates through it.
+ * <p/>
+ * Batch operations run on threads of their own, which are shut down when the
+ * application domain is closed.
  */
-public class ApplicationDomain {
+public class ApplicationDomain implements AutoCloseable {
 
     static final Logger log = LoggerFactory.getLogger(ApplicationDomain.class);
 
@@ -281,6 +293,25 @@ public class ApplicationDomain {
      */
     public static final String LDAP_ARCHIVE_NAME_ATTRIBUTE = "LDAP_ARCHIVE_NAME_ATTRIBUTE";
 
+    /**
+     * The maximum number of concurrent directory lookups in batch operations
+     * <p/>
+     * Defaults to, and is capped by, the maximum number of pooled connections
+     * of the adapter. A typical value is
+     * <I>"8"</I>
+     */
+    public static final String LDAP_BATCH_PARALLELISM = "LDAP_BATCH_PARALLELISM";
+
+    /**
+     * Whether users and groups are assigned to roles optimistically
+     * <p/>
+     * If so, the participation entry is created right away and the role (and roles
+     * container) is only created if the directory reports it missing. The user or
+     * group is then not verified to exist. A typical value is
+     * <I>"true"</I>
+     */
+    public static final String LDAP_OPTIMISTIC_CREATE = "LDAP_OPTIMISTIC_CREATE";
+
     /**
      * The name of the Administrator role
      */
@@ -338,6 +369,16 @@ public class ApplicationDomain {
     // Roles
     protected final String rolesDNTemplate;
 
+    // Compiled templates
+    private final DnTemplate userTemplate;
+    private final DnTemplate roleTemplate;
+    private final DnTemplate rolesTemplate;
+    private final DnTemplate groupTemplate;
+    private final DnTemplate archiveTemplate;
+    private final DnTemplate userInRoleTemplate;
+    private final DnTemplate groupInRoleTemplate;
+    private final DnTemplate userInGroupTemplate;
+
     //
     protected final String usersContext;
     protected final String groupsContext;
@@ -346,10 +387,18 @@ public class ApplicationDomain {
     //
     protected final LdapAdapter adapter;
 
+    // Role assignments
+    protected final boolean optimisticCreate;
+
+    // Batch operations
+    protected final int batchParallelism;
+    private ExecutorService batchExecutor = null; // created on demand
+    private boolean closed = false;
+
     public ApplicationDomain(Map<String, String> config) throws ConfigurationException {
         this(config, new LdapAdapter(config));
     }
-    public ApplicationDomain(Map<String, String> config, LdapAdapter adapter) {
+    public ApplicationDomain(Map<String, String> config, LdapAdapter adapter) throws ConfigurationException {
         this.adapter = adapter;
 
         // === Init application specifics ===
@@ -398,6 +447,18 @@ public class ApplicationDomain {
         foreignDomainDNTemplate =
                 config.getOrDefault(LDAP_FOREIGN_DOMAIN_DN_TEMPLATE, "ou=%s,ou=ForeignUsers,dc=test");
 
+        //--------------------------------------------------------------------------
+        // -- Compile templates, verifying the number of %s markers in each --
+        //--------------------------------------------------------------------------
+        userTemplate = DnTemplate.compile(userDNTemplate, 1); // userId
+        roleTemplate = DnTemplate.compile(roleDNTemplate, 2); // roleId, archiveName
+        rolesTemplate = DnTemplate.compile(rolesDNTemplate, 1); // archiveName
+        groupTemplate = DnTemplate.compile(groupDNTemplate, 1); // groupName
+        archiveTemplate = DnTemplate.compile(archiveDNTemplate, 1); // archiveName
+        userInRoleTemplate = DnTemplate.compile(userInRoleDNTemplate, 3); // userId, roleId, archiveName
+        groupInRoleTemplate = DnTemplate.compile(groupInRoleDNTemplate, 3); // groupId, roleId, archiveName
+        userInGroupTemplate = DnTemplate.compile(userInGroupDNTemplate, 2); // userId, groupName
+
         //--------------------------------------------------------------------------
         // -- Archive attributes --
         //--------------------------------------------------------------------------
@@ -432,6 +493,84 @@ public class ApplicationDomain {
         // -- Search filter for finding roles in a specific archive --
         //--------------------------------------------------------------------------
         roleSearchFilter = config.getOrDefault(LDAP_ROLE_SEARCH_FILTER, "(ou=*)");
+
+        //--------------------------------------------------------------------------
+        // -- Create role participations optimistically? --
+        //--------------------------------------------------------------------------
+        optimisticCreate = Boolean.parseBoolean(config.getOrDefault(LDAP_OPTIMISTIC_CREATE, "false").trim());
+
+        //--------------------------------------------------------------------------
+        // -- Concurrency in batch operations, bounded by the connection pool --
+        //--------------------------------------------------------------------------
+        int maxActive = adapter.getPoolMaxActive();
+        String _parallelism = config.get(LDAP_BATCH_PARALLELISM);
+        if (null == _parallelism || _parallelism.length() == 0) {
+            batchParallelism = maxActive;
+        }
+        else {
+            try {
+                int parallelism = Integer.parseInt(_parallelism.trim());
+                if (parallelism < 1) {
+                    throw new NumberFormatException("must be at least 1");
+                }
+                batchParallelism = Math.min(parallelism, maxActive);
+            }
+            catch (NumberFormatException nfe) {
+                String info = "Illegal batch parallelism \"" + _parallelism + "\": " + nfe.getMessage();
+                throw new ConfigurationException(info);
+            }
+        }
+    }
+
+    /**
+     * Shuts down the threads running batch operations, if any. The adapter is not
+     * closed, since it may be shared with other application domains.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (null != batchExecutor) {
+            batchExecutor.shutdown();
+        }
+    }
+
+    /**
+     * A business operation, i.e. the body of a public method
+     */
+    private interface Tagged<T, E extends Exception> {
+        T call() throws E, ConfigurationException, DirectoryException;
+    }
+
+    /**
+     * Carries out a business operation, with the current thread tagged with its name
+     * so that Flight Recorder events for the directory operations it causes refer to
+     * it (see {@link BusinessOperation}).
+     */
+    private static <T, E extends Exception> T tagged(final String name, final Tagged<T, E> call) throws E, ConfigurationException, DirectoryException {
+        try (BusinessOperation operation = BusinessOperation.begin(name)) {
+            return call.call();
+        }
+    }
+
+    /**
+     * Carries out a business operation producing a stream. The business operation
+     * lasts until the stream is closed, but the current thread is only tagged while
+     * the stream is being set up.
+     */
+    private static <T> Stream<T> taggedStream(final String name, final Tagged<Stream<T>, RuntimeException> call) throws ConfigurationException, DirectoryException {
+        BusinessOperation operation = BusinessOperation.begin(name);
+        boolean streaming = false;
+        try {
+            Stream<T> stream = call.call().onClose(operation::close);
+            streaming = true;
+            return stream;
+        }
+        finally {
+            if (streaming) {
+                operation.detach();
+            } else {
+                operation.close();
+            }
+        }
     }
 
     /**
@@ -441,8 +580,34 @@ public class ApplicationDomain {
      * @return The distinguished name (DN) of the object if user exists in LDAP, null otherwise
      */
     public String findObjectByDn(final String dn) throws ConfigurationException, DirectoryException {
+        return tagged("findObjectByDn", () -> doFindObjectByDn(dn));
+    }
+
+    private String doFindObjectByDn(final String dn) throws ConfigurationException, DirectoryException {
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.searchForDn(dn, filter, "*");
+        SearchRequest req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
+
+        Entry obj = adapter.findObject(req);
+        if (null != obj) {
+            // Return the distinguished name of the object
+            return obj.getDn().toString();
+        }
+        return null;
+    }
+
+    /**
+     * Find object by it's (already parsed) distinguished name (regardless of objectClass)
+     * <p/>
+     * @param dn some distinguished name
+     * @return The distinguished name (DN) of the object if user exists in LDAP, null otherwise
+     */
+    public String findObjectByDn(final Dn dn) throws ConfigurationException, DirectoryException {
+        return tagged("findObjectByDn", () -> doFindObjectByDn(dn));
+    }
+
+    private String doFindObjectByDn(final Dn dn) throws ConfigurationException, DirectoryException {
+        final String filter = "(objectClass=*)";
+        SearchRequest req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
 
         Entry obj = adapter.findObject(req);
         if (null != obj) {
@@ -459,29 +624,27 @@ public class ApplicationDomain {
      * exist.
      */
     public String createArchive(final String archiveName) throws ConfigurationException, DirectoryException {
+        return tagged("createArchive", () -> doCreateArchive(archiveName));
+    }
 
-        String _archiveDn = LdapAdapter.compose(archiveDNTemplate, archiveName);
+    private String doCreateArchive(final String archiveName) throws ConfigurationException, DirectoryException {
 
-        try {
-            Dn archiveDn = new Dn(_archiveDn);
+        Dn archiveDn = archiveTemplate.expand(archiveName);
 
+        try {
             DefaultEntry archiveEntry = new DefaultEntry(archiveDn);
             archiveEntry.add("objectclass", "organizationalUnit");
             archiveEntry.add("ou", archiveName);
 
             adapter.createObject(archiveEntry);
         }
-        catch (LdapInvalidDnException e) {
-            String info = "Invalid archive DN: " + _archiveDn;
-            throw new ConfigurationException(info);
-        }
         catch (LdapException e) {
             String info = "Could not assemble a new entry for archive " + archiveName;
             info += ": " + e.getMessage();
             throw new DirectoryWriteException(info, e);
         }
 
-        return _archiveDn; // If all OK
+        return archiveDn.getName(); // If all OK
     }
 
 
@@ -489,206 +652,310 @@ public class ApplicationDomain {
      * Assigns a user, identified by an id, to a role.
      */
     public String assignUserToRole(final String userId, final String roleId, final String archiveName) throws InvalidParameterException, ConfigurationException, DirectoryException {
+        return tagged("assignUserToRole", () -> doAssignUserToRole(userId, roleId, archiveName));
+    }
+
+    private String doAssignUserToRole(final String userId, final String roleId, final String archiveName) throws InvalidParameterException, ConfigurationException, DirectoryException {
+        if (optimisticCreate) {
+            return assignUserToRoleOptimistically(userId, roleId, archiveName);
+        }
 
-        final String _userDn = LdapAdapter.compose(userDNTemplate, userId);
-        if (null == findObjectByDn(_userDn)) {
-            String info = "The specified user is unknown to the system: \"" + userId + "\" (" + _userDn + ")";
+        final Dn userDn = userTemplate.expand(userId);
+        if (null == findObjectByDn(userDn)) {
+            String info = "The specified user is unknown to the system: \"" + userId + "\" (" + userDn + ")";
             throw new InvalidParameterException(info);
         }
 
         // ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        String _rolesDn = LdapAdapter.compose(rolesDNTemplate, archiveName);
-        if (null == findObjectByDn(_rolesDn)) {
-            try {
-                Dn rolesDn = new Dn(_rolesDn);
-
-                DefaultEntry rolesEntry = new DefaultEntry(rolesDn);
-                rolesEntry.add("objectclass", "organizationalUnit");
-                rolesEntry.add("ou", "Roles");
-
-                adapter.createObject(rolesEntry);
-            }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid roles DN: " + _rolesDn;
-                throw new ConfigurationException(info);
-            }
-            catch (LdapException e) {
-                String info = "Could not create roles base entry in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
-            }
+        DefaultEntry rolesEntry = rolesEntry(archiveName);
+        if (null == findObjectByDn(rolesEntry.getDn())) {
+            adapter.createObject(rolesEntry);
         }
 
         // ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        String _roleDn = LdapAdapter.compose(roleDNTemplate, roleId, archiveName);
-        if (null == findObjectByDn(_roleDn)) {
-            try {
-                Dn roleDn = new Dn(_roleDn);
-
-                DefaultEntry roleEntry = new DefaultEntry(roleDn);
-                roleEntry.add("objectclass", "organizationalUnit");
-                roleEntry.add(groupIdAttribute, roleId);
-
-                adapter.createObject(roleEntry);
-            }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid role DN: " + _roleDn;
-                throw new ConfigurationException(info);
-            }
-            catch (LdapException e) {
-                String info = "Could not assemble a new entry for role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
-            }
+        DefaultEntry roleEntry = roleEntry(roleId, archiveName);
+        if (null == findObjectByDn(roleEntry.getDn())) {
+            adapter.createObject(roleEntry);
         }
 
         // cn=<userId>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        final String _participationDn = LdapAdapter.compose(userInRoleDNTemplate, userId, roleId, archiveName);
-        if (null == findObjectByDn(_participationDn)) {
-            try {
-                Dn participationDn = new Dn(_participationDn);
-
-                DefaultEntry participationEntry = new DefaultEntry(participationDn);
-                participationEntry.add("objectclass", "dsGroupMember");
-                participationEntry.add("cn", userId);
-                participationEntry.add("memberObject", _userDn);
-
-                adapter.createObject(participationEntry);
-            }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid role participation DN: " + _participationDn;
-                throw new ConfigurationException(info);
-            }
-            catch (LdapException e) {
-                String info = "Could not assemble a new participation entry for user " + userId + " in role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
-            }
+        final Dn participationDn = userInRoleTemplate.expand(userId, roleId, archiveName);
+        if (null == findObjectByDn(participationDn)) {
+            adapter.createObject(participationEntry(participationDn, userId, userDn.getName()));
         }
-        return _participationDn; // If all OK
+        return participationDn.getName(); // If all OK
     }
 
     /**
      * Assigns a group, identified by an id, to a role.
      */
     public String assignGroupToRole(final String groupId, final String roleId, final String archiveName) throws InvalidParameterException, ConfigurationException, DirectoryException {
+        return tagged("assignGroupToRole", () -> doAssignGroupToRole(groupId, roleId, archiveName));
+    }
 
-        final String _groupDn = LdapAdapter.compose(groupDNTemplate, groupId);
-        if (null == findObjectByDn(_groupDn)) {
-            String info = "The specified global group is unknown to the system: \"" + groupId + "\" (" + _groupDn + ")";
+    private String doAssignGroupToRole(final String groupId, final String roleId, final String archiveName) throws InvalidParameterException, ConfigurationException, DirectoryException {
+        if (optimisticCreate) {
+            return assignGroupToRoleOptimistically(groupId, roleId, archiveName);
+        }
+
+        final Dn groupDn = groupTemplate.expand(groupId);
+        if (null == findObjectByDn(groupDn)) {
+            String info = "The specified global group is unknown to the system: \"" + groupId + "\" (" + groupDn + ")";
             throw new InvalidParameterException(info);
         }
 
         // ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        String _rolesDn = LdapAdapter.compose(rolesDNTemplate, archiveName);
-        if (null == findObjectByDn(_rolesDn)) {
-            try {
-                Dn rolesDn = new Dn(_rolesDn);
+        DefaultEntry rolesEntry = rolesEntry(archiveName);
+        if (null == findObjectByDn(rolesEntry.getDn())) {
+            adapter.createObject(rolesEntry);
+        }
 
-                DefaultEntry rolesEntry = new DefaultEntry(rolesDn);
-                rolesEntry.add("objectclass", "organizationalUnit");
-                rolesEntry.add("ou", "Roles");
+        // ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+        DefaultEntry roleEntry = roleEntry(roleId, archiveName);
+        if (null == findObjectByDn(roleEntry.getDn())) {
+            adapter.createObject(roleEntry);
+        }
 
-                adapter.createObject(rolesEntry);
-            }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid roles DN: " + _rolesDn;
-                throw new ConfigurationException(info);
-            }
-            catch (LdapException e) {
-                String info = "Could not create roles base entry in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
-            }
-            catch (DirectoryWriteException e) {
-                String info = "Could not create roles base entry in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw e;
-            }
+        // ou=<groupId>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+        final Dn groupParticipationDn = groupInRoleTemplate.expand(groupId, roleId, archiveName);
+        if (null == findObjectByDn(groupParticipationDn)) {
+            // group (DN) participates in role
+            adapter.createObject(participationEntry(groupParticipationDn, groupId, groupDn.getName()));
         }
 
-        // ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        String _roleDn = LdapAdapter.compose(roleDNTemplate, roleId, archiveName);
-        if (null == findObjectByDn(_roleDn)) {
-            try {
-                Dn roleDn = new Dn(_roleDn);
+        // TODO Check
+        // cn=<groupId>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+        final Dn roleParticipationDn = userInRoleTemplate.expand(groupId, roleId, archiveName);
+        if (null == findObjectByDn(roleParticipationDn)) {
+            // group (DN) participates in role
+            adapter.createObject(participationEntry(roleParticipationDn, groupId, groupDn.getName()));
+        }
+        return roleParticipationDn.getName(); // If all OK
+    }
 
-                DefaultEntry roleEntry = new DefaultEntry(roleDn);
-                roleEntry.add("objectclass", "organizationalUnit");
-                roleEntry.add(groupIdAttribute, roleId);
 
-                adapter.createObject(roleEntry);
+    /**
+     * Assigns a batch of users, identified by ids, to a role.
+     * <p/>
+     * All users are validated just as when assigning a single user, i.e. by looking up
+     * the distinguished names from the user DN template, in one pipelined batch. The
+     * roles container and the role are created once (if missing), and the participation
+     * entries are created in a pipeline. Users that are unknown to the system, or could
+     * not be assigned, are reported among the outcomes without stopping the batch.
+     * <p/>
+     * @return the outcome per user ID, with the distinguished name of the participation
+     * entry if successful.
+     */
+    public Map<String, BatchResult<String>> assignUsersToRole(
+            final Collection<String> userIds, final String roleId, final String archiveName
+    ) throws ConfigurationException, DirectoryException {
+        return tagged("assignUsersToRole", () -> doAssignUsersToRole(userIds, roleId, archiveName));
+    }
+
+    private Map<String, BatchResult<String>> doAssignUsersToRole(
+            final Collection<String> userIds, final String roleId, final String archiveName
+    ) throws ConfigurationException, DirectoryException {
+        Map<String, BatchResult<String>> outcomes = new LinkedHashMap<>();
+        if (userIds.isEmpty()) {
+            return outcomes;
+        }
+
+        // Validate all users, in one pipelined batch
+        List<String> _userDns = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            _userDns.add(userTemplate.expand(userId).getName());
+        }
+        Map<String, Boolean> known = adapter.existsAll(_userDns);
+
+        // Make sure the shared containers exist, i.e. the roles container and the role
+        DefaultEntry rolesEntry = rolesEntry(archiveName);
+        DefaultEntry roleEntry = roleEntry(roleId, archiveName);
+        String _rolesDn = rolesEntry.getDn().toString();
+        String _roleDn = roleEntry.getDn().toString();
+
+        Map<String, Boolean> exists = adapter.existsAll(List.of(_rolesDn, _roleDn));
+        List<DefaultEntry> containers = new ArrayList<>(2);
+        if (!exists.get(_rolesDn)) {
+            containers.add(rolesEntry);
+        }
+        if (!exists.get(_roleDn)) {
+            containers.add(roleEntry);
+        }
+        for (BatchResult<LdapAdapter.CreateOutcome> outcome : adapter.createObjects(containers).values()) {
+            if (!outcome.isSuccess()) {
+                String info = "Could not create role " + roleId + " in archive " + archiveName;
+                info += ": " + outcome.getFailure().getMessage();
+                throw new DirectoryWriteException(info, outcome.getFailure());
             }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid role DN: " + _roleDn;
-                throw new ConfigurationException(info);
+        }
+
+        // Pipeline participations
+        Map<String, String> participants = new HashMap<>(); // participation DN -> userId
+        List<DefaultEntry> participations = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            if (outcomes.containsKey(userId)) {
+                continue; // duplicate
             }
-            catch (LdapException e) {
-                String info = "Could not assemble a new entry for role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
+
+            final Dn userDn = userTemplate.expand(userId);
+            if (!known.get(userDn.getName())) {
+                String info = "The specified user is unknown to the system: \"" + userId + "\" (" + userDn + ")";
+                outcomes.put(userId, BatchResult.failure(new InvalidParameterException(info)));
+                continue;
             }
-            catch (DirectoryWriteException e) {
-                String info = "Could not assemble a new entry for role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw e;
+
+            final Dn participationDn = userInRoleTemplate.expand(userId, roleId, archiveName);
+            DefaultEntry participation = participationEntry(participationDn, userId, userDn.getName());
+            participations.add(participation);
+            participants.put(participation.getDn().toString(), userId);
+            outcomes.put(userId, null); // placeholder, keeping order
+        }
+
+        Map<String, BatchResult<LdapAdapter.CreateOutcome>> created = adapter.createObjects(participations);
+        for (Map.Entry<String, BatchResult<LdapAdapter.CreateOutcome>> outcome : created.entrySet()) {
+            String _participationDn = outcome.getKey();
+            String userId = participants.get(_participationDn);
+            if (outcome.getValue().isSuccess()) {
+                outcomes.put(userId, BatchResult.success(_participationDn));
+            } else {
+                outcomes.put(userId, BatchResult.failure(outcome.getValue().getFailure()));
             }
         }
+        return outcomes;
+    }
 
-        // cn=<groupId>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        final String _groupParticipationDn = LdapAdapter.compose(groupInRoleDNTemplate, groupId, roleId, archiveName);
-        if (null == findObjectByDn(_groupParticipationDn)) {
-            try {
-                Dn participationDn = new Dn(_groupParticipationDn);
+    /**
+     * Assigns a user, identified by an id, to a role - optimistically.
+     * <p/>
+     * The participation entry is created first, which in the common case (an existing
+     * role) takes one round trip. The role and roles container are only created if
+     * the directory reports them missing, and an already existing participation is
+     * considered a success. The user is not verified to exist.
+     */
+    private String assignUserToRoleOptimistically(final String userId, final String roleId, final String archiveName) throws ConfigurationException, DirectoryException {
+        final Dn userDn = userTemplate.expand(userId);
+        final Dn participationDn = userInRoleTemplate.expand(userId, roleId, archiveName);
+
+        createOptimistically(
+                participationEntry(participationDn, userId, userDn.getName()),
+                roleEntry(roleId, archiveName),
+                rolesEntry(archiveName)
+        );
+        return participationDn.getName(); // If all OK
+    }
 
-                DefaultEntry participationEntry = new DefaultEntry(participationDn);
-                participationEntry.add("objectclass", "dsGroupMember");
-                participationEntry.add("memberObject", _groupDn); // group (DN) participates in role
-                participationEntry.add("cn", groupId);
+    /**
+     * Assigns a group, identified by an id, to a role - optimistically.
+     * <p/>
+     * Just as {@link #assignUserToRoleOptimistically(String, String, String)}, but the
+     * group is not verified to exist.
+     */
+    private String assignGroupToRoleOptimistically(final String groupId, final String roleId, final String archiveName) throws ConfigurationException, DirectoryException {
+        final Dn groupDn = groupTemplate.expand(groupId);
+        final Dn groupParticipationDn = groupInRoleTemplate.expand(groupId, roleId, archiveName);
+        final Dn roleParticipationDn = userInRoleTemplate.expand(groupId, roleId, archiveName);
+
+        DefaultEntry roleEntry = roleEntry(roleId, archiveName);
+        DefaultEntry rolesEntry = rolesEntry(archiveName);
+        createOptimistically(participationEntry(groupParticipationDn, groupId, groupDn.getName()), roleEntry, rolesEntry);
+        createOptimistically(participationEntry(roleParticipationDn, groupId, groupDn.getName()), roleEntry, rolesEntry);
+        return roleParticipationDn.getName(); // If all OK
+    }
 
-                adapter.createObject(participationEntry);
+    /**
+     * Creates an entry, creating its ancestors only if the directory reports them missing.
+     * <p/>
+     * An entry that already exists is considered created.
+     * <p/>
+     * @param chain the entry, followed by its ancestors (nearest first)
+     */
+    private void createOptimistically(final DefaultEntry... chain) throws DirectoryException {
+        createOptimistically(chain, 0);
+    }
+
+    private void createOptimistically(final DefaultEntry[] chain, final int idx) throws DirectoryException {
+        try {
+            adapter.createObject(chain[idx]);
+        }
+        catch (DirectoryException de) {
+            ResultCodeEnum rc = LdapAdapter.getResultCode(de);
+            if (ResultCodeEnum.ENTRY_ALREADY_EXISTS == rc) {
+                return;
             }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid role participation DN: " + _groupParticipationDn;
-                throw new ConfigurationException(info);
+            if (ResultCodeEnum.NO_SUCH_OBJECT != rc || idx + 1 >= chain.length) {
+                throw de;
             }
-            catch (LdapException e) {
-                String info = "Could not assemble a new participation entry for group " + groupId + " in role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
+
+            log.debug("Parent of {} is missing, creating it", chain[idx].getDn());
+            createOptimistically(chain, idx + 1);
+
+            // Retry, now that the parent exists
+            try {
+                adapter.createObject(chain[idx]);
             }
-            catch (DirectoryWriteException e) {
-                String info = "Could not assemble a new participation entry for group " + groupId + " in role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw e;
+            catch (DirectoryException retry) {
+                if (ResultCodeEnum.ENTRY_ALREADY_EXISTS != LdapAdapter.getResultCode(retry)) {
+                    throw retry;
+                }
             }
         }
+    }
 
-        // TODO Check
-        // cn=<userId>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
-        final String _roleParticipationDn = LdapAdapter.compose(userInRoleDNTemplate, groupId, roleId, archiveName);
-        if (null == findObjectByDn(_roleParticipationDn)) {
-            try {
-                Dn participationDn = new Dn(_roleParticipationDn);
+    /*
+     * Assembles a roles container entry for an archive, i.e.
+     * ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+     */
+    private DefaultEntry rolesEntry(final String archiveName) throws ConfigurationException, DirectoryException {
+        Dn rolesDn = rolesTemplate.expand(archiveName);
+        try {
+            DefaultEntry rolesEntry = new DefaultEntry(rolesDn);
+            rolesEntry.add("objectclass", "organizationalUnit");
+            rolesEntry.add("ou", "Roles");
+            return rolesEntry;
+        }
+        catch (LdapException e) {
+            String info = "Could not create roles base entry in archive " + archiveName;
+            info += ": " + e.getMessage();
+            throw new DirectoryWriteException(info, e);
+        }
+    }
 
-                DefaultEntry participationEntry = new DefaultEntry(participationDn);
-                participationEntry.add("objectclass", "dsGroupMember");
-                participationEntry.add("cn", groupId);
-                participationEntry.add("memberObject", _groupDn); // group (DN) participates in role
+    /*
+     * Assembles a role entry, i.e.
+     * ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+     */
+    private DefaultEntry roleEntry(final String roleId, final String archiveName) throws ConfigurationException, DirectoryException {
+        Dn roleDn = roleTemplate.expand(roleId, archiveName);
+        try {
+            DefaultEntry roleEntry = new DefaultEntry(roleDn);
+            roleEntry.add("objectclass", "organizationalUnit");
+            roleEntry.add(groupIdAttribute, roleId);
+            return roleEntry;
+        }
+        catch (LdapException e) {
+            String info = "Could not assemble a new entry for role " + roleId + " in archive " + archiveName;
+            info += ": " + e.getMessage();
+            throw new DirectoryWriteException(info, e);
+        }
+    }
 
-                adapter.createObject(participationEntry);
-            }
-            catch (LdapInvalidDnException e) {
-                String info = "Invalid role participation DN: " + _roleParticipationDn;
-                throw new ConfigurationException(info);
-            }
-            catch (LdapException e) {
-                String info = "Could not assemble a new participation entry for group " + groupId + " in role " + roleId + " in archive " + archiveName;
-                info += ": " + e.getMessage();
-                throw new DirectoryWriteException(info, e);
-            }
+    /*
+     * Assembles a participation entry, i.e.
+     * cn=<id>,ou=<roleId>,ou=Roles,ou=<archiveName>,ou=Archives,dc=test
+     */
+    private DefaultEntry participationEntry(final Dn participationDn, final String id, final String memberDn) throws DirectoryException {
+        try {
+            DefaultEntry participationEntry = new DefaultEntry(participationDn);
+            participationEntry.add("objectclass", "dsGroupMember");
+            participationEntry.add("cn", id);
+            participationEntry.add("memberObject", memberDn); // user (or group) DN participates in role
+            return participationEntry;
+        }
+        catch (LdapException e) {
+            String info = "Could not assemble a new participation entry for " + id + " (" + participationDn + ")";
+            info += ": " + e.getMessage();
+            throw new DirectoryWriteException(info, e);
         }
-        return _roleParticipationDn; // If all OK
     }
 
 
@@ -699,8 +966,12 @@ public class ApplicationDomain {
      * @return The distinguished name (DN) of the user if user exists in LDAP, null otherwise
      */
     public String findUserDn(final String userId) throws ConfigurationException, DirectoryException {
+        return tagged("findUserDn", () -> doFindUserDn(userId));
+    }
+
+    private String doFindUserDn(final String userId) throws ConfigurationException, DirectoryException {
         final String filter = LdapAdapter.compose("(&(objectClass=%s)(%s=%s))", userObjectClass, userIdAttribute, userId);
-        SearchRequest req = adapter.shallowSearchWithFilter(usersContext, filter, userIdAttribute);
+        SearchRequest req = adapter.shallowSearchWithFilter(usersContext, filter, SchemaConstants.NO_ATTRIBUTE); // only the DN is needed
 
         Entry user = adapter.findObject(req);
         if (null != user) {
@@ -719,9 +990,13 @@ public class ApplicationDomain {
      * @throws DirectoryException
      */
     public boolean globalGroupExists(final String groupName) throws ConfigurationException, DirectoryException {
-        String dn = LdapAdapter.compose(groupDNTemplate, groupName);
+        return tagged("globalGroupExists", () -> doGlobalGroupExists(groupName));
+    }
+
+    private boolean doGlobalGroupExists(final String groupName) throws ConfigurationException, DirectoryException {
+        Dn dn = groupTemplate.expand(groupName);
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.searchForDn(dn, filter, "*");
+        SearchRequest req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
 
         Entry group = adapter.findObject(req);
         return null != group;
@@ -736,9 +1011,13 @@ public class ApplicationDomain {
      * @throws DirectoryException
      */
     public boolean archiveExists(final String archiveName) throws ConfigurationException, DirectoryException {
-        String dn = LdapAdapter.compose(archiveDNTemplate, archiveName);
+        return tagged("archiveExists", () -> doArchiveExists(archiveName));
+    }
+
+    private boolean doArchiveExists(final String archiveName) throws ConfigurationException, DirectoryException {
+        Dn dn = archiveTemplate.expand(archiveName);
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.searchForDn(dn, filter, "*");
+        SearchRequest req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
 
         Entry archive = adapter.findObject(req);
         return null != archive;
@@ -754,21 +1033,26 @@ public class ApplicationDomain {
      * @throws DirectoryException
      */
     public boolean isMemberOfGlobalGroup(final String userId, final String groupName) throws ConfigurationException, DirectoryException {
+        return tagged("isMemberOfGlobalGroup", () -> doIsMemberOfGlobalGroup(userId, groupName));
+    }
+
+    private boolean doIsMemberOfGlobalGroup(final String userId, final String groupName) throws ConfigurationException, DirectoryException {
 
         //------------------------------------------------------------------------
         // Global groups live under "ou=Groups, dc=test".
         // Strategy: Compose a DN for a user dsGroupMember and try to locate it.
         //------------------------------------------------------------------------
-        String dn;
+        final String filter = "(objectClass=*)";
+        SearchRequest req;
         if (groupName.startsWith("ou=")) {
             // Backwards compatibility: Whole ou= stored in ACL in database
-            dn = LdapAdapter.compose("cn=%s, %s", userId, groupName);
+            String dn = LdapAdapter.compose("cn=%s, %s", userId, groupName);
+            req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
         } else {
             // "cn=<userName>,ou=<groupName>,ou=Groups,dc=test"
-            dn = LdapAdapter.compose(userInGroupDNTemplate, userId, groupName);
+            Dn dn = userInGroupTemplate.expand(userId, groupName);
+            req = adapter.searchForDn(dn, filter, SchemaConstants.NO_ATTRIBUTE);
         }
-        final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.searchForDn(dn, filter, "*");
         Entry user = adapter.findObject(req);
         return null != user;
     }
@@ -776,41 +1060,187 @@ public class ApplicationDomain {
 
 
 
-    public Collection<String> getUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
-        Collection<String> users = new LinkedList<>();
+    /**
+     * Finds the distinguished names of a batch of users, concurrently.
+     * <p/>
+     * @param userIds user IDs (values associated with the 'cn' or 'uid' attributes)
+     * @return the outcome per user ID, with the distinguished name (DN) of the user if
+     * found and null otherwise.
+     * @see #findUserDn(String)
+     */
+    public Map<String, BatchResult<String>> findUserDns(final Collection<String> userIds) {
+        return fanOut("findUserDns", userIds, this::findUserDn);
+    }
 
-        //------------------------------------------------------------------------
-        // Global groups live under "ou=Groups, dc=test".
-        // Strategy: Get all entries directly thereunder
-        //------------------------------------------------------------------------
+    /**
+     * Checks whether each of a batch of named users is member of a named (global) group,
+     * concurrently.
+     * <p/>
+     * @return the outcome per user ID
+     * @see #isMemberOfGlobalGroup(String, String)
+     */
+    public Map<String, BatchResult<Boolean>> areMembersOfGlobalGroup(
+            final Collection<String> userIds, final String groupName
+    ) {
+        return fanOut("areMembersOfGlobalGroup", userIds, userId -> isMemberOfGlobalGroup(userId, groupName));
+    }
 
-        final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.shallowSearchWithFilter(groupsContext, filter, "*");
-        Collection<Entry> _users = adapter.findObjects(req);
-        for (Entry user : _users) {
-            try {
-                Attribute a = user.get("cn");
-                if (null != a) {
-                    String cn = a.getString();
-                    users.add(cn); // userId
-                }
+    /**
+     * A lookup functor, used in batch operations
+     */
+    private interface Lookup<T> {
+        T lookup(final String key) throws Exception;
+    }
+
+    /**
+     * Runs a lookup for each key concurrently, as a business operation of its own.
+     */
+    private <T> Map<String, BatchResult<T>> fanOut(final String name, final Collection<String> keys, final Lookup<T> lookup) {
+        try (BusinessOperation operation = BusinessOperation.begin(name)) {
+            return fanOut(keys, lookup);
+        }
+    }
 
-                a = user.get("memberObject");
-                if (null != a) {
-                    String memberObject = a.getString();
-                    // users.add(memberObject); // userDN
+    /**
+     * Runs a lookup for each key concurrently, but no more than batchParallelism
+     * at a time. A failing lookup does not abort the batch, but is reported among
+     * the results.
+     * <p/>
+     * @return the outcome per key, in the order of the keys
+     */
+    private <T> Map<String, BatchResult<T>> fanOut(final Collection<String> keys, final Lookup<T> lookup) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        ExecutorService executor = getBatchExecutor();
+        final String businessOperation = BusinessOperation.current(); // carried over to the batch threads
+        for (String key : keys) {
+            if (!futures.containsKey(key)) {
+                futures.put(key, executor.submit(() -> {
+                    try (BusinessOperation operation = BusinessOperation.resume(businessOperation)) {
+                        return lookup.lookup(key);
+                    }
+                }));
+            }
+        }
+
+        Map<String, BatchResult<T>> results = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            String key = entry.getKey();
+            Future<T> future = entry.getValue();
+            if (interrupted) {
+                future.cancel(true);
+                results.put(key, BatchResult.failure(new InterruptedException("Batch was interrupted")));
+                continue;
+            }
+
+            try {
+                results.put(key, BatchResult.success(future.get()));
+            }
+            catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof Exception) {
+                    results.put(key, BatchResult.failure((Exception) cause));
+                } else {
+                    results.put(key, BatchResult.failure(ee));
                 }
+                log.debug("Lookup of \"{}\" in batch failed: {}", key, cause.getMessage());
             }
-            catch (LdapInvalidAttributeValueException e) {
-                String info = "User in group entry attribute has unexpected type: " + e.getMessage();
-                throw new DirectoryReadException(info, e);
+            catch (InterruptedException ie) {
+                interrupted = true;
+                future.cancel(true);
+                results.put(key, BatchResult.failure(ie));
             }
         }
-        return users;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (closed) {
+            throw new IllegalStateException("Application domain is closed");
+        }
+        if (null == batchExecutor) {
+            AtomicInteger threadCount = new AtomicInteger();
+            batchExecutor = Executors.newFixedThreadPool(batchParallelism, runnable -> {
+                Thread thread = new Thread(runnable, "ldap-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
+
+
+    /**
+     * Returns the user ids of the members of a named (global) group, as a sorted
+     * list without duplicates.
+     */
+    public Collection<String> getUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+        return tagged("getUsersInGlobalGroup", () -> doGetUsersInGlobalGroup(groupName));
+    }
+
+    private Collection<String> doGetUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+        try (Stream<String> users = streamUsersInGlobalGroup(groupName)) {
+            return users.collect(NameList.toSortedList());
+        }
+        catch (UncheckedDirectoryException ude) {
+            throw ude.getCause();
+        }
+    }
+
+    /**
+     * Streams the user ids of the members of a named (global) group.
+     * <p/>
+     * The stream holds on to a directory connection and must be closed after use.
+     */
+    public Stream<String> streamUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+        return taggedStream("streamUsersInGlobalGroup", () -> doStreamUsersInGlobalGroup(groupName));
     }
 
+    private Stream<String> doStreamUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+
+        //------------------------------------------------------------------------
+        // Global groups live under "ou=Groups, dc=test".
+        // Strategy: Get all entries directly under "ou=<groupName>, ou=Groups, dc=test"
+        //------------------------------------------------------------------------
+
+        Dn dn = groupTemplate.expand(groupName);
+        final String filter = "(objectClass=dsGroupMember)";
+        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, "cn");
+        return adapter.streamObjects(req)
+                .map(user -> getString(user, "cn", "User in group entry attribute has unexpected type: ")) // userId
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns the user ids of the participants in a named role in an archive, as a
+     * sorted list without duplicates.
+     */
     public Collection<String> getUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
-        Collection<String> users = new LinkedList<>();
+        return tagged("getUsersInRole", () -> doGetUsersInRole(roleName, archiveName));
+    }
+
+    private Collection<String> doGetUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
+        try (Stream<String> users = streamUsersInRole(roleName, archiveName)) {
+            return users.collect(NameList.toSortedList());
+        }
+        catch (UncheckedDirectoryException ude) {
+            throw ude.getCause();
+        }
+    }
+
+    /**
+     * Streams the user ids of the participants in a named role in an archive.
+     * <p/>
+     * The stream holds on to a directory connection and must be closed after use.
+     */
+    public Stream<String> streamUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
+        return taggedStream("streamUsersInRole", () -> doStreamUsersInRole(roleName, archiveName));
+    }
+
+    private Stream<String> doStreamUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
 
         //------------------------------------------------------------------------
         // Roles live under "ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archive, dc=test"
@@ -818,38 +1248,79 @@ public class ApplicationDomain {
         // BEWARE: There may be groups entries there as well!
         //------------------------------------------------------------------------
 
-        String dn = LdapAdapter.compose(roleDNTemplate, roleName, archiveName);
+        Dn dn = roleTemplate.expand(roleName, archiveName);
         final String filter = "(objectClass=dsGroupMember)";
-        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, "*");
-        Collection<Entry> _users = adapter.findObjects(req);
-        for (Entry user : _users) {
-            try {
-                Attribute a = user.get("cn");
-                if (null != a) {
-                    String cn = a.getString();
-                    users.add(cn); // userId
-                }
+        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, "cn");
+        return adapter.streamObjects(req)
+                .map(user -> getString(user, "cn", "User in role entry attribute has unexpected type: ")) // userId
+                .filter(Objects::nonNull);
+    }
 
-                a = user.get("memberObject");
-                if (null != a) {
-                    String memberObject = a.getString();
-                    // users.add(memberObject); // userDN
-                }
-            }
-            catch (LdapInvalidAttributeValueException e) {
-                String info = "User in role entry attribute has unexpected type: " + e.getMessage();
-                throw new DirectoryReadException(info, e);
-            }
+    /*
+     * Retrieves a string attribute value from an entry, for use when streaming entries.
+     */
+    private static String getString(final Entry entry, final String attribute, final String problem) {
+        try {
+            Attribute a = entry.get(attribute);
+            return null != a ? a.getString() : null;
+        }
+        catch (LdapInvalidAttributeValueException e) {
+            String info = problem + e.getMessage();
+            throw new UncheckedDirectoryException(new DirectoryReadException(info, e));
         }
-        return users;
     }
 
 
+    /**
+     * Counts the members of a named (global) group, without retrieving them.
+     */
+    public long countUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+        return tagged("countUsersInGlobalGroup", () -> doCountUsersInGlobalGroup(groupName));
+    }
+
+    private long doCountUsersInGlobalGroup(final String groupName) throws ConfigurationException, DirectoryException {
+        Dn dn = groupTemplate.expand(groupName);
+        final String filter = "(objectClass=dsGroupMember)";
+        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, SchemaConstants.NO_ATTRIBUTE);
+        return adapter.countObjects(req);
+    }
+
+    /**
+     * Counts the participants in a named role in an archive, without retrieving them.
+     */
+    public long countUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
+        return tagged("countUsersInRole", () -> doCountUsersInRole(roleName, archiveName));
+    }
+
+    private long doCountUsersInRole(final String roleName, final String archiveName) throws ConfigurationException, DirectoryException {
+        Dn dn = roleTemplate.expand(roleName, archiveName);
+        final String filter = "(objectClass=dsGroupMember)";
+        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, SchemaConstants.NO_ATTRIBUTE);
+        return adapter.countObjects(req);
+    }
+
+    /**
+     * Counts the participants in each of a batch of named roles in an archive,
+     * concurrently.
+     * <p/>
+     * @return the outcome per role name, with the number of participants if successful
+     * @see #countUsersInRole(String, String)
+     */
+    public Map<String, BatchResult<Long>> countUsersInRoles(
+            final Collection<String> roleNames, final String archiveName
+    ) {
+        return fanOut("countUsersInRoles", roleNames, roleName -> countUsersInRole(roleName, archiveName));
+    }
+
     /**
      * Returns the groupIds in the searched LDAP context
      */
     public Collection<String> getGlobalGroups() throws ConfigurationException, DirectoryException {
-        Collection<String> groups = new LinkedList<>();
+        return tagged("getGlobalGroups", this::doGetGlobalGroups);
+    }
+
+    private Collection<String> doGetGlobalGroups() throws ConfigurationException, DirectoryException {
+        NameList.Builder groups = NameList.builder(expectedSize());
 
         //------------------------------------------------------------------------
         // Global groups live under "ou=Groups, dc=test".
@@ -857,41 +1328,125 @@ public class ApplicationDomain {
         //------------------------------------------------------------------------
 
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.shallowSearchWithFilter(groupsContext, filter, "*");
-        Collection<Entry> _groups = adapter.findObjects(req);
-        for (Entry group : _groups) {
-            String dn = group.getDn().toString();
-
-            try {
-                Attribute a = group.get("ou");
-                if (null != a) {
-                    String cn = a.getString();
-                    groups.add(cn); // groupId
+        SearchRequest req = adapter.shallowSearchWithFilter(groupsContext, filter, "ou");
+        adapter.findObjects(req, adapter.getPageSize(), page -> {
+            for (Entry group : page) {
+                try {
+                    Attribute a = group.get("ou");
+                    if (null != a) {
+                        String cn = a.getString();
+                        groups.add(cn); // groupId
+                    }
+                }
+                catch (LdapInvalidAttributeValueException e) {
+                    String info = "Group in group entry attribute has unexpected type: " + e.getMessage();
+                    throw new DirectoryReadException(info, e);
                 }
             }
-            catch (LdapInvalidAttributeValueException e) {
-                String info = "Group in group entry attribute has unexpected type: " + e.getMessage();
-                throw new DirectoryReadException(info, e);
-            }
-        }
-        return groups;
+        });
+        return groups.build();
     }
 
     public Collection<String> getArchives() throws ConfigurationException, DirectoryException {
-        Collection<String> archives = new LinkedList<>();
+        return tagged("getArchives", this::doGetArchives);
+    }
+
+    private Collection<String> doGetArchives() throws ConfigurationException, DirectoryException {
+        NameList.Builder archives = NameList.builder(expectedSize());
 
         //------------------------------------------------------------------------
         // Archives live under "ou=Archives, dc=test".
         // Strategy: Get all entries under "ou=Archives, dc=test"
         //------------------------------------------------------------------------
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.shallowSearchWithFilter(archivesContext, filter, "*");
-        Collection<Entry> _archives = adapter.findObjects(req);
-        for (Entry archive : _archives) {
-            archives.add(adapter.getSimpleName(archive.getDn()));
-        }
+        SearchRequest req = adapter.shallowSearchWithFilter(archivesContext, filter, SchemaConstants.NO_ATTRIBUTE);
+        adapter.findObjects(req, adapter.getPageSize(), page -> {
+            for (Entry archive : page) {
+                archives.add(adapter.getSimpleName(archive.getDn()));
+            }
+        });
 
-        return archives;
+        return archives.build();
+    }
+
+    /**
+     * Returns a window of the user ids of the participants in a named role in an
+     * archive, sorted by user id.
+     * <p/>
+     * @param offset the (zero based) position of the first user id in the window
+     * @param count the (maximum) number of user ids in the window
+     * @return the window, with an estimate of the total number of participants
+     */
+    public ResultWindow<String> getUsersInRole(
+            final String roleName, final String archiveName, final int offset, final int count
+    ) throws ConfigurationException, DirectoryException {
+        return tagged("getUsersInRole", () -> doGetUsersInRole(roleName, archiveName, offset, count));
+    }
+
+    private ResultWindow<String> doGetUsersInRole(
+            final String roleName, final String archiveName, final int offset, final int count
+    ) throws ConfigurationException, DirectoryException {
+        Dn dn = roleTemplate.expand(roleName, archiveName);
+        final String filter = "(objectClass=dsGroupMember)";
+        SearchRequest req = adapter.shallowSearchWithFilter(dn, filter, "cn");
+        return namesOf(adapter.findWindow(req, offset, count, "cn"), "cn", "User in role entry attribute has unexpected type: ");
+    }
+
+    /**
+     * Returns a window of the names of the global groups, sorted by name.
+     * <p/>
+     * @param offset the (zero based) position of the first group in the window
+     * @param count the (maximum) number of groups in the window
+     * @return the window, with an estimate of the total number of global groups
+     */
+    public ResultWindow<String> getGlobalGroups(final int offset, final int count) throws ConfigurationException, DirectoryException {
+        return tagged("getGlobalGroups", () -> doGetGlobalGroups(offset, count));
+    }
+
+    private ResultWindow<String> doGetGlobalGroups(final int offset, final int count) throws ConfigurationException, DirectoryException {
+        final String filter = "(objectClass=*)";
+        SearchRequest req = adapter.shallowSearchWithFilter(groupsContext, filter, "ou");
+        return namesOf(adapter.findWindow(req, offset, count, "ou"), "ou", "Group in group entry attribute has unexpected type: ");
+    }
+
+    /**
+     * Returns a window of the names of the archives, sorted by name.
+     * <p/>
+     * @param offset the (zero based) position of the first archive in the window
+     * @param count the (maximum) number of archives in the window
+     * @return the window, with an estimate of the total number of archives
+     */
+    public ResultWindow<String> getArchives(final int offset, final int count) throws ConfigurationException, DirectoryException {
+        return tagged("getArchives", () -> doGetArchives(offset, count));
+    }
+
+    private ResultWindow<String> doGetArchives(final int offset, final int count) throws ConfigurationException, DirectoryException {
+        final String filter = "(objectClass=*)";
+        SearchRequest req = adapter.shallowSearchWithFilter(archivesContext, filter, archiveNameAttribute);
+        return adapter.findWindow(req, offset, count, archiveNameAttribute)
+                .map(archive -> adapter.getSimpleName(archive.getDn()));
+    }
+
+    /*
+     * The number of names expected in a listing, used to presize it.
+     */
+    private int expectedSize() {
+        int pageSize = adapter.getPageSize();
+        return pageSize > 0 ? pageSize : 64;
+    }
+
+    /*
+     * Maps a window of entries onto the values of a (naming) attribute.
+     */
+    private static ResultWindow<String> namesOf(
+            final ResultWindow<Entry> window, final String attribute, final String problem
+    ) throws DirectoryException {
+        try {
+            return window.map(entry -> getString(entry, attribute, problem));
+        }
+        catch (UncheckedDirectoryException ude) {
+            throw ude.getCause();
+        }
     }
 
     /**
@@ -900,158 +1455,200 @@ public class ApplicationDomain {
      * @return Vector a Vector of roles
      */
     public Collection<String> getRolesInArchive(final String archiveName) throws ConfigurationException, DirectoryException{
-        Collection<String> roles = new LinkedList<>();
+        return tagged("getRolesInArchive", () -> doGetRolesInArchive(archiveName));
+    }
+
+    private Collection<String> doGetRolesInArchive(final String archiveName) throws ConfigurationException, DirectoryException{
+        NameList.Builder roles = NameList.builder(expectedSize());
 
         //------------------------------------------------------------------------
         // Roles of an archives live under "ou=Roles, ou=<archiveName>, ou=Archives, dc=test".
         // Strategy: Get all entries directly thereunder
         //------------------------------------------------------------------------
-        final String base = LdapAdapter.compose(rolesDNTemplate, archiveName);
+        final Dn base = rolesTemplate.expand(archiveName);
         final String filter = "(objectClass=*)";
-        SearchRequest req = adapter.shallowSearchWithFilter(base, filter, "*");
-        Collection<Entry> _roles = adapter.findObjects(req);
-        for (Entry role : _roles) {
-            roles.add(adapter.getSimpleName(role.getDn()));
-        }
+        SearchRequest req = adapter.shallowSearchWithFilter(base, filter, SchemaConstants.NO_ATTRIBUTE);
+        adapter.findObjects(req, adapter.getPageSize(), page -> {
+            for (Entry role : page) {
+                roles.add(adapter.getSimpleName(role.getDn()));
+            }
+        });
 
-        return roles;
+        return roles.build();
     }
 
 
-    /*
-     *
+    /**
+     * Creates and loads an in-memory index of global group memberships and role
+     * participations, answering access checks without going to the directory.
+     * <p/>
+     * The index is a snapshot and has to be refreshed explicitly (see
+     * {@link AuthorizationIndex#refresh()}).
+     * <p/>
+     * @return a loaded authorization index
+     * @throws ConfigurationException
+     * @throws DirectoryException
      */
-    private void groupsAndRolesAnalysis(
-            final String userId,
-            final String userDn,
-            final HashSet<String> globalGroups,
-            Hashtable<String, HashSet<String>> roles
-    ) throws ConfigurationException, DirectoryException {
-
-        /* --------------------------------------------------------------------------------
-         * Determine list of global group memberships
-         *
-         * Membership is determined by a having a dsGroupMember object under the
-         * global group with memberObject = user DN.
-         *
-         * The result is a list of "simple" group names (and not DNs to these groups)
-         * -------------------------------------------------------------------------------*/
-        log.trace("Analyzing global group memberships of user \"{}\" ({})", userId, userDn);
-
-        final String filter = LdapAdapter.compose("(&(objectClass=dsGroupMember)(memberObject=%s))", userDn);
-        SearchRequest req = adapter.deepSearchWithFilter(groupsContext, filter, "*");
-        Collection<Entry> memberships = adapter.findObjects(req);
+    public AuthorizationIndex createAuthorizationIndex() throws ConfigurationException, DirectoryException {
+        return tagged("createAuthorizationIndex", this::doCreateAuthorizationIndex);
+    }
 
-        for (Entry membership : memberships) {
-            // From: cn=<userId>, ou=<groupName>, ou=Groups, dc=test
-            // To:  {cn=<userId>, ou=<groupName>, ou=Groups, dc=test}
-            Rdn[] membershipRdns = membership.getDn().getRdns().toArray(RdnT);
+    private AuthorizationIndex doCreateAuthorizationIndex() throws ConfigurationException, DirectoryException {
+        AuthorizationIndex index = new AuthorizationIndex(adapter, groupsContext, archivesContext);
+        index.refresh();
+        return index;
+    }
 
-            //
-            Rdn groupRdn = membershipRdns[1];
-            Value _groupName = groupRdn.getAva().getValue();
-            String groupName = _groupName.getString();
 
-            globalGroups.add(groupName);
+    /**
+     * Resolves the effective access of a user, i.e. the global groups the user is
+     * member of and the roles the user participates in - either directly or indirectly
+     * through one of the global groups.
+     * <p/>
+     * The search for global group memberships and the search for direct role
+     * participations are independent and run concurrently. The search for indirect
+     * role participations is issued by the calling thread as soon as the global groups
+     * are known, never from a thread completing one of the other searches.
+     * <p/>
+     * @param userId the user id
+     * @return the effective access of the user
+     * @throws ConfigurationException
+     * @throws DirectoryException
+     */
+    public EffectiveAccess resolveEffectiveAccess(final String userId) throws ConfigurationException, DirectoryException {
+        return tagged("resolveEffectiveAccess", () -> doResolveEffectiveAccess(userId));
+    }
 
-            log.trace("User \"{}\" ({}) is a member of the global group \"{}\"", userId, userDn, groupName);
-        }
+    private EffectiveAccess doResolveEffectiveAccess(final String userId) throws ConfigurationException, DirectoryException {
+        final String userDn = userTemplate.expand(userId).getName();
+        log.trace("Resolving effective access of user \"{}\" ({})", userId, userDn);
 
         /* --------------------------------------------------------------------------------
-         * Determine list of direct role participations for user
-         *
-         * Direct participation is determined by a having a dsGroupMember object under the
+         * Membership is determined by a having a dsGroupMember object under the
          * global group with memberObject = user DN.
          *
-         * The result is a hashtable (hashed on archive name) with lists of "simple"
-         * role names (and not DNs to these roles).
+         * Direct participation is determined by a having a dsGroupMember object under the
+         * role with memberObject = user DN.
          * -------------------------------------------------------------------------------*/
-        log.trace("Analyzing direct role participation of user \"{}\" ({})", userId, userDn);
+        final String filter = "(&(objectClass=dsGroupMember)(memberObject=" + FilterEncoder.encodeFilterValue(userDn) + "))";
 
-        req = adapter.deepSearchWithFilter(archivesContext, filter, "*");
-        Collection<Entry> participations = adapter.findObjects(req);
+        SearchRequest membershipsReq = adapter.deepSearchWithFilter(groupsContext, filter, SchemaConstants.NO_ATTRIBUTE);
+        SearchRequest participationsReq = adapter.deepSearchWithFilter(archivesContext, filter, SchemaConstants.NO_ATTRIBUTE);
 
-        for (Entry participation : participations) {
-            // From: cn=<userId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test
-            // To:  {cn=<userId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test}
-            Rdn[] participationRdns = participation.getDn().getRdns().toArray(RdnT);
+        CompletableFuture<Set<String>> globalGroups = adapter.findObjectsAsync(membershipsReq)
+                .thenApply(memberships -> groupNamesOf(userId, memberships));
 
-            //
-            Rdn roleRdn = participationRdns[1];
-            Value _roleName = roleRdn.getAva().getValue();
-            String roleName = _roleName.getString();
+        CompletableFuture<Map<String, Set<String>>> directRoles = adapter.findObjectsAsync(participationsReq)
+                .thenApply(participations -> roleNamesOf(userId, participations));
 
-            //
-            Rdn archiveRdn = participationRdns[3];
-            Value _archiveName = archiveRdn.getAva().getValue();
-            String archiveName = _archiveName.getString();
-
-            //
-            HashSet<String> _roles = roles.computeIfAbsent(archiveName, k -> new HashSet<>());
-            _roles.add(roleName);
-
-            log.trace("User \"{}\" ({}) participates directly in role \"{}\" in archive \"{}\"", userId, userDn, roleName, archiveName);
-        }
+        CompletableFuture<Map<String, Set<String>>> indirectRoles = null;
+        try {
+            Set<String> groups = globalGroups.get();
 
-        /* --------------------------------------------------------------------------------
-         * Determine list of indirect role participations for groups that user is part of
-         *
-         * Indirect participation is determined by a having a dsGroupMember object under the
-         * global group with memberObject = group DN (and not the user DN). Since we don't
-         * have stored the group DN (from above) we will recreate these using groupDNTemplate.
-         *
-         * The result is a hashtable (hashed on archive name) with lists of "simple"
-         * role names (and not DNs to these roles).
-         * -------------------------------------------------------------------------------*/
-        log.trace("Analyzing indirect role participation user \"{}\" ({})", userId, userDn);
+            /* --------------------------------------------------------------------------------
+             * Indirect participation is determined by a having a dsGroupMember object under the
+             * role with memberObject = group DN (and not the user DN).
+             * -------------------------------------------------------------------------------*/
+            indirectRoles = indirectRolesOf(groups);
 
-        int numberOfGroups = globalGroups.size();
-        if (numberOfGroups > 0) {
+            Map<String, Set<String>> roles = new HashMap<>(directRoles.get());
+            for (Map.Entry<String, Set<String>> entry : indirectRoles.get().entrySet()) {
+                roles.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+            }
 
-            StringBuilder groupFilter = new StringBuilder("(&(objectClass=dsGroupMember)");
-            if (numberOfGroups > 1) {
-                groupFilter.append("(|");
+            EffectiveAccess access = new EffectiveAccess(userId, groups, roles);
+            log.trace("Resolved {}", access);
+            return access;
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            while (cause instanceof CompletionException && null != cause.getCause()) {
+                cause = cause.getCause();
             }
-            for (String groupId : globalGroups) {
-                log.trace("Looking for group membership \"{}\" in roles", groupId);
-                String groupDn = LdapAdapter.compose(groupDNTemplate, groupId);
-                groupFilter.append("(memberObject=").append(groupDn).append(")");
+            if (cause instanceof DirectoryException) {
+                throw (DirectoryException) cause;
             }
-            if (numberOfGroups > 1) {
-                groupFilter.append(")");
+            if (cause instanceof ConfigurationException) {
+                throw (ConfigurationException) cause;
             }
-            groupFilter.append(")");
-
-            log.trace("Searching from \"{}\" using filter {}", archivesContext, groupFilter);
+            String info = "Could not resolve effective access of user \"" + userId + "\"";
+            throw new DirectoryReadException(info, cause);
+        }
+        catch (InterruptedException ie) {
+            globalGroups.cancel(true);
+            directRoles.cancel(true);
+            if (null != indirectRoles) {
+                indirectRoles.cancel(true);
+            }
+            Thread.currentThread().interrupt();
 
-            req = adapter.deepSearchWithFilter(archivesContext, groupFilter.toString(), "*");
-            participations = adapter.findObjects(req);
+            String info = "Interrupted while resolving effective access of user \"" + userId + "\"";
+            throw new DirectoryReadException(info, ie);
+        }
+    }
 
-            for (Entry participation : participations) {
-                // From: cn=<groupId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test
-                // To:  {cn=<groupId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test}
-                Rdn[] participationRdns = participation.getDn().getRdns().toArray(RdnT);
+    /*
+     * Searches for roles that any of the global groups participate in.
+     */
+    private CompletableFuture<Map<String, Set<String>>> indirectRolesOf(final Set<String> globalGroups) throws ConfigurationException {
+        if (globalGroups.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
 
-                //
-                Rdn roleRdn = participationRdns[1];
-                Value _roleName = roleRdn.getAva().getValue();
-                String roleName = _roleName.getString();
+        StringBuilder groupFilter = new StringBuilder("(&(objectClass=dsGroupMember)(|");
+        for (String groupName : globalGroups) {
+            String groupDn = groupTemplate.expand(groupName).getName();
+            groupFilter.append("(memberObject=").append(FilterEncoder.encodeFilterValue(groupDn)).append(")");
+        }
+        groupFilter.append("))");
 
-                //
-                Rdn archiveRdn = participationRdns[3];
-                Value _archiveName = archiveRdn.getAva().getValue();
-                String archiveName = _archiveName.getString();
+        log.trace("Searching from \"{}\" using filter {}", archivesContext, groupFilter);
+        SearchRequest req = adapter.deepSearchWithFilter(archivesContext, groupFilter.toString(), SchemaConstants.NO_ATTRIBUTE);
 
-                //
-                HashSet<String> _roles = roles.computeIfAbsent(archiveName, k -> new HashSet<>());
-                _roles.add(roleName);
+        return adapter.findObjectsAsync(req)
+                .thenApply(participations -> roleNamesOf(null, participations));
+    }
 
-                log.trace("User \"{}\" ({}) participates indirectly in role \"{}\" in archive \"{}\" through a group membership", userId, userDn, roleName, archiveName);
+    /*
+     * From: cn=<userId>, ou=<groupName>, ou=Groups, dc=test
+     * To:   <groupName>
+     */
+    private Set<String> groupNamesOf(final String userId, final Collection<Entry> memberships) {
+        Set<String> groupNames = new HashSet<>();
+        for (Entry membership : memberships) {
+            Rdn[] membershipRdns = membership.getDn().getRdns().toArray(RdnT);
+            if (membershipRdns.length < 2) {
+                continue;
             }
+            String groupName = membershipRdns[1].getAva().getValue().getString();
+            groupNames.add(groupName);
+
+            log.trace("User \"{}\" is a member of the global group \"{}\"", userId, groupName);
         }
-        if (log.isTraceEnabled()) {
-            log.trace("Analysis ready");
+        return groupNames;
+    }
+
+    /*
+     * From: cn=<userId|groupId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test
+     * To:   <archiveName> -> {<roleName>}
+     */
+    private Map<String, Set<String>> roleNamesOf(final String userId, final Collection<Entry> participations) {
+        Map<String, Set<String>> roles = new HashMap<>();
+        for (Entry participation : participations) {
+            Rdn[] participationRdns = participation.getDn().getRdns().toArray(RdnT);
+            if (participationRdns.length < 4) {
+                continue;
+            }
+            String roleName = participationRdns[1].getAva().getValue().getString();
+            String archiveName = participationRdns[3].getAva().getValue().getString();
+            roles.computeIfAbsent(archiveName, k -> new HashSet<>()).add(roleName);
+
+            if (null != userId) {
+                log.trace("User \"{}\" participates directly in role \"{}\" in archive \"{}\"", userId, roleName, archiveName);
+            } else {
+                log.trace("Group \"{}\" participates in role \"{}\" in archive \"{}\"", participationRdns[0].getAva().getValue().getString(), roleName, archiveName);
+            }
         }
+        return roles;
     }
 }
-
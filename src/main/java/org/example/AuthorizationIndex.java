@@ -0,0 +1,345 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+
+/**
+ * An in-memory snapshot of global group memberships and role participations,
+ * answering access checks without going to the directory.
+ * <p/>
+ * The whole groups and archives subtrees are loaded at once. Users, groups and
+ * roles are interned to dense int ids and memberships are kept as compact sets of
+ * user ids - either a sorted array (when sparse) or a bitmap (when dense) - so
+ * checks do not allocate. Participation through a global group is resolved when
+ * loading, so {@link #hasRole(String, String, String)} is a single lookup.
+ * <p/>
+ * The snapshot is only as fresh as the last {@link #refresh()}, which loads a new
+ * snapshot and swaps it in atomically. Names are matched as stored in the directory.
+ */
+public final class AuthorizationIndex {
+    private static final Logger log = LoggerFactory.getLogger(AuthorizationIndex.class);
+
+    private static final String MEMBER_OBJECT = "memberObject";
+    private static final String MEMBERSHIP_FILTER = "(objectClass=dsGroupMember)";
+
+    /**
+     * A compact, immutable set of (non-negative) ints.
+     */
+    static final class IntSet {
+        static final IntSet EMPTY = new IntSet(new int[0], null, 0);
+
+        private final int[] values; // sorted, if sparse
+        private final long[] words; // bitmap, if dense
+        private final int cardinality;
+
+        private IntSet(int[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static IntSet of(BitSet bits) {
+            int cardinality = bits.cardinality();
+            if (cardinality == 0) {
+                return EMPTY;
+            }
+            // A sorted array costs 32 bits per member, a bitmap one bit per position
+            if ((long) cardinality * Integer.SIZE <= bits.length()) {
+                return new IntSet(bits.stream().toArray(), null, cardinality);
+            }
+            return new IntSet(null, bits.toLongArray(), cardinality);
+        }
+
+        boolean contains(int i) {
+            if (null != words) {
+                int word = i >>> 6;
+                return word < words.length && (words[word] & (1L << i)) != 0L;
+            }
+            return Arrays.binarySearch(values, i) >= 0;
+        }
+
+        int size() {
+            return cardinality;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the index.
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+                new IntSet[0], new IntSet[0], 0L
+        );
+
+        private final Map<String, Integer> users;
+        private final Map<String, Integer> groups;
+        private final Map<String, Map<String, Integer>> roles; // archive -> role -> id
+
+        private final IntSet[] groupMembers; // group id -> user ids
+        private final IntSet[] roleParticipants; // role id -> user ids (direct and through groups)
+
+        private final long loadedAt;
+
+        private Snapshot(
+                Map<String, Integer> users, Map<String, Integer> groups, Map<String, Map<String, Integer>> roles,
+                IntSet[] groupMembers, IntSet[] roleParticipants, long loadedAt
+        ) {
+            this.users = users;
+            this.groups = groups;
+            this.roles = roles;
+            this.groupMembers = groupMembers;
+            this.roleParticipants = roleParticipants;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Mutable state while loading a snapshot.
+     */
+    private static final class Loader {
+        private final Map<String, Integer> users = new HashMap<>();
+        private final Map<String, Integer> groups = new HashMap<>();
+        private final Map<String, Map<String, Integer>> roles = new HashMap<>();
+
+        private final List<BitSet> groupMembers = new ArrayList<>();
+        private final List<BitSet> roleUsers = new ArrayList<>();
+        private final List<BitSet> roleGroups = new ArrayList<>();
+
+        private int user(String userId) {
+            return users.computeIfAbsent(userId, k -> users.size());
+        }
+
+        private int group(String groupName) {
+            Integer id = groups.get(groupName);
+            if (null == id) {
+                id = groups.size();
+                groups.put(groupName, id);
+                groupMembers.add(new BitSet());
+            }
+            return id;
+        }
+
+        private int role(String roleName, String archiveName) {
+            Map<String, Integer> _roles = roles.computeIfAbsent(archiveName, k -> new HashMap<>());
+            Integer id = _roles.get(roleName);
+            if (null == id) {
+                id = roleUsers.size();
+                _roles.put(roleName, id);
+                roleUsers.add(new BitSet());
+                roleGroups.add(new BitSet());
+            }
+            return id;
+        }
+
+        private Snapshot build() {
+            IntSet[] _groupMembers = new IntSet[groupMembers.size()];
+            for (int g = 0; g < _groupMembers.length; g++) {
+                _groupMembers[g] = IntSet.of(groupMembers.get(g));
+            }
+
+            IntSet[] _roleParticipants = new IntSet[roleUsers.size()];
+            for (int r = 0; r < _roleParticipants.length; r++) {
+                BitSet participants = roleUsers.get(r);
+                BitSet _groups = roleGroups.get(r);
+                for (int g = _groups.nextSetBit(0); g >= 0; g = _groups.nextSetBit(g + 1)) {
+                    participants.or(groupMembers.get(g));
+                }
+                _roleParticipants[r] = IntSet.of(participants);
+            }
+
+            return new Snapshot(users, groups, roles, _groupMembers, _roleParticipants, System.currentTimeMillis());
+        }
+    }
+
+    //
+    private final LdapAdapter adapter;
+    private final String groupsContext;
+    private final String archivesContext;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Creates an (empty) index. Call {@link #refresh()} to load it.
+     * <p/>
+     * @param adapter the adapter used when loading
+     * @param groupsContext the subtree holding global groups, i.e. "ou=Groups,dc=test"
+     * @param archivesContext the subtree holding archives, i.e. "ou=Archives,dc=test"
+     */
+    AuthorizationIndex(LdapAdapter adapter, String groupsContext, String archivesContext) {
+        this.adapter = adapter;
+        this.groupsContext = groupsContext;
+        this.archivesContext = archivesContext;
+    }
+
+    /**
+     * Loads a new snapshot from the directory and swaps it in atomically. Checks
+     * carried out concurrently see either the previous or the new snapshot in full.
+     * <p/>
+     * @throws ConfigurationException
+     * @throws DirectoryException if the directory could not be read, in which case the previous snapshot is kept
+     */
+    public void refresh() throws ConfigurationException, DirectoryException {
+        long start = System.currentTimeMillis();
+
+        Dn groupsDn;
+        try {
+            groupsDn = new Dn(groupsContext);
+        }
+        catch (LdapInvalidDnException lide) {
+            String info = "Invalid groups context \"" + groupsContext + "\": " + lide.getMessage();
+            throw new ConfigurationException(info);
+        }
+
+        Loader loader = new Loader();
+
+        // From: cn=<userId>, ou=<groupName>, ou=Groups, dc=test
+        SearchRequest req = adapter.deepSearchWithFilter(groupsContext, MEMBERSHIP_FILTER, MEMBER_OBJECT);
+        load(req, membership -> {
+            Rdn[] rdns = rdnsOf(membership);
+            if (rdns.length < 2) {
+                return;
+            }
+            int group = loader.group(valueOf(rdns[1]));
+            loader.groupMembers.get(group).set(loader.user(valueOf(rdns[0])));
+        });
+
+        // From: cn=<userId|groupId>, ou=<roleName>, ou=Roles, ou=<archiveName>, ou=Archives, dc=test
+        req = adapter.deepSearchWithFilter(archivesContext, MEMBERSHIP_FILTER, MEMBER_OBJECT);
+        load(req, participation -> {
+            Rdn[] rdns = rdnsOf(participation);
+            if (rdns.length < 4) {
+                return;
+            }
+            int role = loader.role(valueOf(rdns[1]), valueOf(rdns[3]));
+            String member = valueOf(rdns[0]);
+            if (isGroup(participation, groupsDn)) {
+                loader.roleGroups.get(role).set(loader.group(member));
+            } else {
+                loader.roleUsers.get(role).set(loader.user(member));
+            }
+        });
+
+        Snapshot _snapshot = loader.build();
+        snapshot = _snapshot;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded authorization index with {} users, {} groups and {} roles in {} ms",
+                    _snapshot.users.size(), _snapshot.groups.size(), _snapshot.roleParticipants.length,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private interface EntryHandler {
+        void handle(Entry entry);
+    }
+
+    private void load(SearchRequest req, EntryHandler handler) throws DirectoryException {
+        try (Stream<Entry> entries = adapter.streamObjects(req)) {
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                handler.handle(it.next());
+            }
+        }
+        catch (UncheckedDirectoryException ude) {
+            throw ude.getCause();
+        }
+    }
+
+    private static Rdn[] rdnsOf(Entry entry) {
+        return entry.getDn().getRdns().toArray(new Rdn[0]);
+    }
+
+    private static String valueOf(Rdn rdn) {
+        return rdn.getAva().getValue().getString();
+    }
+
+    /*
+     * Participants are global groups if their member object lives under the groups context.
+     */
+    private static boolean isGroup(Entry participation, Dn groupsDn) {
+        Attribute memberObject = participation.get(MEMBER_OBJECT);
+        if (null == memberObject || null == memberObject.get()) {
+            return false;
+        }
+        String value = memberObject.get().getString();
+        try {
+            return new Dn(value).isDescendantOf(groupsDn);
+        }
+        catch (LdapInvalidDnException lide) {
+            log.warn("Ignoring invalid member object \"{}\" of {}", value, participation.getDn());
+            return false;
+        }
+    }
+
+    /**
+     * Is user member of named global group?
+     */
+    public boolean isMember(final String userId, final String groupName) {
+        Snapshot _snapshot = snapshot;
+        Integer user = _snapshot.users.get(userId);
+        Integer group = _snapshot.groups.get(groupName);
+        return null != user && null != group && _snapshot.groupMembers[group].contains(user);
+    }
+
+    /**
+     * Does user participate in named role in named archive, either directly or
+     * through one of its global groups?
+     */
+    public boolean hasRole(final String userId, final String roleName, final String archiveName) {
+        Snapshot _snapshot = snapshot;
+        Integer user = _snapshot.users.get(userId);
+        if (null == user) {
+            return false;
+        }
+        Map<String, Integer> _roles = _snapshot.roles.get(archiveName);
+        if (null == _roles) {
+            return false;
+        }
+        Integer role = _roles.get(roleName);
+        return null != role && _snapshot.roleParticipants[role].contains(user);
+    }
+
+    /**
+     * Returns the time of the last (successful) refresh, in milliseconds since the epoch,
+     * or 0 if never loaded.
+     */
+    public long getLoadedAt() {
+        return snapshot.loadedAt;
+    }
+
+    public int getUserCount() {
+        return snapshot.users.size();
+    }
+
+    public int getGroupCount() {
+        return snapshot.groups.size();
+    }
+
+    public int getRoleCount() {
+        return snapshot.roleParticipants.length;
+    }
+
+    @Override
+    public String toString() {
+        Snapshot _snapshot = snapshot;
+        return "AuthorizationIndex{users=" + _snapshot.users.size() + ", groups=" + _snapshot.groups.size()
+                + ", roles=" + _snapshot.roleParticipants.length + ", loadedAt=" + _snapshot.loadedAt + "}";
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+/**
+ * The outcome of one item in a batch operation, either a value or the
+ * reason why the item failed.
+ * <p/>
+ * Batch operations report failures per item rather than aborting the
+ * whole batch on the first failure.
+ */
+public final class BatchResult<T> {
+
+    private final T value;
+    private final Exception failure;
+
+    private BatchResult(T value, Exception failure) {
+        this.value = value;
+        this.failure = failure;
+    }
+
+    public static <T> BatchResult<T> success(T value) {
+        return new BatchResult<>(value, null);
+    }
+
+    public static <T> BatchResult<T> failure(Exception failure) {
+        return new BatchResult<>(null, failure);
+    }
+
+    /**
+     * Did this item succeed?
+     */
+    public boolean isSuccess() {
+        return null == failure;
+    }
+
+    /**
+     * Returns the value of a successful item (which may be null), null if the item failed.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the reason why the item failed, null if it succeeded.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "success(" + value + ")" : "failure(" + failure.getMessage() + ")";
+    }
+}
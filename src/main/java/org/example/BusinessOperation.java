@@ -0,0 +1,95 @@
+package org.example;
+
+import jdk.jfr.EventType;
+
+/**
+ * Tags the current thread with the {@link ApplicationDomain} method being called, so
+ * that JDK Flight Recorder events for directory operations (see {@link DirectoryOperationEvent}
+ * and {@link PoolBorrowEvent}) show which business operation caused them.
+ * <p/>
+ * Used with try-with-resources. Nested calls keep the outermost tag. When none of the
+ * events are enabled, nothing is tagged, allocated or touched (not even a thread local).
+ */
+final class BusinessOperation implements AutoCloseable {
+
+    // The business operation of the current thread, if tagged
+    private static final ThreadLocal<String> current = new ThreadLocal<>();
+
+    // Checked before allocating anything, so nothing is allocated unless recording
+    private static final EventType BUSINESS_OPERATION_EVENTS = EventType.getEventType(BusinessOperationEvent.class);
+    private static final EventType DIRECTORY_OPERATION_EVENTS = EventType.getEventType(DirectoryOperationEvent.class);
+    private static final EventType POOL_BORROW_EVENTS = EventType.getEventType(PoolBorrowEvent.class);
+
+    private static final BusinessOperation NONE = new BusinessOperation(false, null);
+
+    private boolean tagged;
+    private final BusinessOperationEvent event; // null if not recorded
+
+    private BusinessOperation(boolean tagged, BusinessOperationEvent event) {
+        this.tagged = tagged;
+        this.event = event;
+    }
+
+    /**
+     * Tags the current thread with a business operation, unless already tagged.
+     */
+    static BusinessOperation begin(String name) {
+        boolean recorded = BUSINESS_OPERATION_EVENTS.isEnabled();
+        if (!recorded && !DIRECTORY_OPERATION_EVENTS.isEnabled() && !POOL_BORROW_EVENTS.isEnabled()) {
+            return NONE;
+        }
+        if (null != current.get()) {
+            return NONE; // nested
+        }
+        current.set(name);
+
+        BusinessOperationEvent event = null;
+        if (recorded) {
+            event = new BusinessOperationEvent();
+            event.operation = name;
+            event.begin();
+        }
+        return new BusinessOperation(true, event);
+    }
+
+    /**
+     * Tags the current thread with a business operation started on another thread,
+     * i.e. for work handed to an executor. No business operation event is recorded
+     * on behalf of this thread.
+     * <p/>
+     * @param name the business operation, as returned by {@link #current()} on the other thread (may be null)
+     */
+    static BusinessOperation resume(String name) {
+        if (null == name || null != current.get()) {
+            return NONE;
+        }
+        current.set(name);
+        return new BusinessOperation(true, null);
+    }
+
+    /**
+     * Returns the business operation of the current thread, or null if not tagged.
+     */
+    static String current() {
+        return current.get();
+    }
+
+    /**
+     * Removes the tag from the current thread, while the business operation goes on
+     * elsewhere (i.e. a stream being consumed) until closed.
+     */
+    void detach() {
+        if (tagged) {
+            current.remove();
+            tagged = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        detach();
+        if (null != event) {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * A JDK Flight Recorder event, spanning a call to an {@link ApplicationDomain} method.
+ * Directory operations and pool borrows carried out during the call refer to it by name.
+ */
+@Name("org.example.BusinessOperation")
+@Label("Business Operation")
+@Category({"LDAP"})
+@Description("A call to an ApplicationDomain method")
+final class BusinessOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+}
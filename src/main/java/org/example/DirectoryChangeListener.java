@@ -0,0 +1,44 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+/**
+ * Receives changes to entries in the directory, as reported through a subscription
+ * (see {@link LdapAdapter#subscribe}).
+ * <p/>
+ * Callbacks are made on the thread of the subscription, one at a time and in the
+ * order the directory reports the changes, so they should return promptly.
+ */
+public interface DirectoryChangeListener {
+
+    /**
+     * An entry was added.
+     */
+    default void entryAdded(Entry entry) {}
+
+    /**
+     * An entry was modified. The entry is provided as it looks after the modification.
+     */
+    default void entryModified(Entry entry) {}
+
+    /**
+     * An entry was deleted. The entry is provided as it looked before the deletion.
+     */
+    default void entryDeleted(Entry entry) {}
+
+    /**
+     * An entry was renamed or moved.
+     * <p/>
+     * @param previousDn the distinguished name of the entry before it was moved (may be null if not reported)
+     * @param entry the entry after it was moved
+     */
+    default void entryMoved(Dn previousDn, Entry entry) {}
+
+    /**
+     * The subscription was re-established after the connection to the directory was
+     * lost. Changes made in between have not been reported, so any state derived from
+     * earlier changes should be considered stale.
+     */
+    default void resubscribed() {}
+}
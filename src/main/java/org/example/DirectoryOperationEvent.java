@@ -0,0 +1,80 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * A JDK Flight Recorder event, spanning one directory operation carried out by
+ * {@link LdapAdapter}.
+ * <p/>
+ * Details are only filled in if the event is to be committed, i.e. if it is enabled
+ * and above the duration threshold of the recording.
+ */
+@Name("org.example.DirectoryOperation")
+@Label("Directory Operation")
+@Category({"LDAP"})
+@Description("A search, creation or modification in the directory")
+final class DirectoryOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Base DN")
+    @Description("The distinguished name operated on, or the base of a search")
+    String baseDn;
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Result Code")
+    String resultCode;
+
+    @Label("Entries")
+    long entries;
+
+    @Label("Business Operation")
+    @Description("The ApplicationDomain method that caused the operation")
+    String businessOperation;
+
+    /**
+     * Begins the event, on behalf of the business operation of the current thread.
+     * The operation may end on another thread, i.e. when a stream is closed.
+     */
+    void start() {
+        businessOperation = BusinessOperation.current();
+        begin();
+    }
+
+    /**
+     * Ends the event and commits it, if it should be committed.
+     * <p/>
+     * @param request the search request, or null if not a search
+     * @param failure the cause if the operation failed, or null if successful
+     */
+    void complete(LdapMetrics.Operation operation, Dn base, SearchRequest request, long entries, Throwable failure) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation.getLabel();
+        this.baseDn = null != base ? base.getName() : null;
+        if (null != request) {
+            this.scope = request.getScope().getLdapUrlValue();
+            this.filter = String.valueOf(request.getFilter());
+        }
+        ResultCodeEnum rc = null == failure ? ResultCodeEnum.SUCCESS : LdapAdapter.getResultCode(failure);
+        this.resultCode = rc.name();
+        this.entries = entries;
+        commit();
+    }
+}
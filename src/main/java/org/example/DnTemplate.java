@@ -0,0 +1,146 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A distinguished name template, such as "cn=%s,ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test",
+ * compiled once and expanded into {@link Dn} objects directly.
+ * <p/>
+ * Each "%s" marker has to make up the whole value of an RDN (a slot). All other RDNs
+ * are parsed once, when compiling the template, and shared between expansions. The
+ * constant RDNs following the last slot make up a suffix, compiled into a {@link Dn}
+ * of its own, onto which expansions only prepend the leading RDNs.
+ * Values substituted for slots are used as is, and escaped as needed when the
+ * distinguished name is rendered - unlike with {@link LdapAdapter#compose(String, String...)}
+ * where values are pasted into the template text.
+ */
+public final class DnTemplate {
+
+    private static final String MARKER = "%s";
+
+    private final String template;
+    private final Rdn[] rdns; // constant RDNs, or null for slots
+    private final String[] types; // attribute types of slots, or null for constant RDNs
+    private final int arity;
+    private final int leading; // number of RDNs up to (and including) the last slot
+    private final Dn suffix; // the remaining (constant) RDNs
+
+    private DnTemplate(String template, Rdn[] rdns, String[] types, int arity, int leading, Dn suffix) {
+        this.template = template;
+        this.rdns = rdns;
+        this.types = types;
+        this.arity = arity;
+        this.leading = leading;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Compiles a distinguished name template.
+     * <p/>
+     * @param template the template, with one "%s" marker per slot
+     * @param arity the expected number of slots
+     * @return the compiled template
+     * @throws ConfigurationException if the template is invalid, or does not have the expected number of slots
+     */
+    public static DnTemplate compile(String template, int arity) throws ConfigurationException {
+        if (null == template || template.length() == 0) {
+            String info = "No distinguished name template was provided";
+            throw new ConfigurationException(info);
+        }
+
+        List<Rdn> parsed;
+        try {
+            parsed = new Dn(template).getRdns();
+        }
+        catch (LdapInvalidDnException lide) {
+            String info = "Invalid distinguished name template \"" + template + "\": " + lide.getMessage();
+            throw new ConfigurationException(info);
+        }
+
+        // Dn keeps its RDNs with the leftmost (most specific) first
+        Rdn[] rdns = new Rdn[parsed.size()];
+        String[] types = new String[parsed.size()];
+        int slots = 0;
+        int leading = 0;
+        for (int i = 0; i < rdns.length; i++) {
+            Rdn rdn = parsed.get(i);
+            if (rdn.size() == 1 && MARKER.equals(rdn.getAva().getValue().getString())) {
+                types[i] = rdn.getAva().getType();
+                slots++;
+                leading = i + 1;
+            }
+            else if (rdn.getName().contains(MARKER)) {
+                String info = "Unsupported distinguished name template \"" + template + "\": ";
+                info += "A %s marker must make up the whole value of an RDN";
+                throw new ConfigurationException(info);
+            }
+            else {
+                rdns[i] = rdn;
+            }
+        }
+
+        if (slots != arity) {
+            String info = "Mismatch between template \"" + template + "\" and the number of components: ";
+            info += "Expected " + arity + " %s markers, but found " + slots;
+            throw new ConfigurationException(info);
+        }
+
+        Dn suffix;
+        try {
+            suffix = new Dn(Arrays.copyOfRange(rdns, leading, rdns.length));
+        }
+        catch (LdapInvalidDnException lide) {
+            String info = "Invalid distinguished name template \"" + template + "\": " + lide.getMessage();
+            throw new ConfigurationException(info);
+        }
+        return new DnTemplate(template, rdns, types, arity, leading, suffix);
+    }
+
+    /**
+     * Expands the template into a distinguished name.
+     * <p/>
+     * @param values one value per slot, in the order of the slots in the template
+     * @return the distinguished name
+     * @throws ConfigurationException if the number of values does not match the number of slots,
+     * or the values do not make up a valid distinguished name
+     */
+    public Dn expand(String... values) throws ConfigurationException {
+        if (values.length != arity) {
+            String info = "Mismatch between template \"" + template + "\" and the number of provided components: ";
+            info += "Expected " + arity + " but got " + values.length;
+            throw new ConfigurationException(info);
+        }
+
+        try {
+            // Prepend leading RDNs onto the suffix, from the right
+            Dn dn = suffix;
+            int slot = values.length;
+            for (int i = leading - 1; i >= 0; i--) {
+                dn = new Dn(null != types[i] ? new Rdn(types[i], values[--slot]) : rdns[i], dn);
+            }
+            return dn;
+        }
+        catch (LdapInvalidDnException lide) {
+            String info = "Invalid DN from template \"" + template + "\": " + lide.getMessage();
+            throw new ConfigurationException(info);
+        }
+    }
+
+    /**
+     * Returns the number of slots in the template.
+     */
+    public int getArity() {
+        return arity;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,70 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The effective access of a user, i.e. the global groups the user is member of and
+ * the roles the user participates in per archive - either directly or indirectly
+ * through a global group.
+ * <p/>
+ * Instances are immutable.
+ */
+public final class EffectiveAccess {
+
+    private final String userId;
+    private final Set<String> globalGroups;
+    private final Map<String, Set<String>> roles;
+
+    EffectiveAccess(String userId, Set<String> globalGroups, Map<String, Set<String>> roles) {
+        this.userId = userId;
+        this.globalGroups = Collections.unmodifiableSet(new HashSet<>(globalGroups));
+
+        Map<String, Set<String>> _roles = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : roles.entrySet()) {
+            _roles.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+        }
+        this.roles = Collections.unmodifiableMap(_roles);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the names of the global groups the user is member of.
+     */
+    public Set<String> getGlobalGroups() {
+        return globalGroups;
+    }
+
+    /**
+     * Returns the names of the roles the user participates in, per archive name.
+     */
+    public Map<String, Set<String>> getRoles() {
+        return roles;
+    }
+
+    /**
+     * Returns the names of the roles the user participates in, in a named archive.
+     */
+    public Set<String> getRoles(String archiveName) {
+        return roles.getOrDefault(archiveName, Collections.emptySet());
+    }
+
+    public boolean isMemberOf(String groupName) {
+        return globalGroups.contains(groupName);
+    }
+
+    public boolean hasRole(String roleName, String archiveName) {
+        return getRoles(archiveName).contains(roleName);
+    }
+
+    @Override
+    public String toString() {
+        return "EffectiveAccess{userId=" + userId + ", globalGroups=" + globalGroups + ", roles=" + roles + "}";
+    }
+}
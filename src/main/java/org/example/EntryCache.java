@@ -0,0 +1,282 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A bounded, in-process cache of directory entries looked up by distinguished name,
+ * used by {@link LdapAdapter} for base scope searches.
+ * <p/>
+ * Entries are kept per (normalized) distinguished name, with one view per combination
+ * of search filter and requested attributes. Each view expires after a fixed time to
+ * live. When the cache is full, eviction is frequency aware (along the lines of
+ * W-TinyLFU): newly cached objects enter a small LRU window, and an object leaving
+ * the window is only admitted into the main LRU region if it has been accessed more
+ * frequently than the object it would displace. Access frequencies are tracked
+ * approximately in a count-min sketch that is periodically aged.
+ * <p/>
+ * Writes through the adapter invalidate the affected distinguished names, so a caller
+ * always sees its own writes.
+ */
+public final class EntryCache {
+
+    /**
+     * A cached view of an entry
+     */
+    private static final class View {
+        private final Entry entry;
+        private final long expiresAt;
+
+        private View(Entry entry, long expiresAt) {
+            this.entry = entry;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Cached views of one distinguished name
+     */
+    private static final class Node {
+        private final Map<String, View> views = new HashMap<>(4);
+    }
+
+    /**
+     * Approximate access frequencies (count-min sketch with 4-bit counters,
+     * stored one per byte for simplicity) with periodic aging.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = { 0x97cb3127, 0xc3a5c85c, 0x9ae16a3b, 0x2f90404f };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        private FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize) * 2 - 1);
+            table = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(hash, row);
+                if (table[row][i] < MAX_COUNT) {
+                    table[row][i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                // Age all counters, so that stale popularity fades out
+                for (byte[] row : table) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        private int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, table[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+    }
+
+    //
+    private final int maxSize;
+    private final int windowSize;
+    private final long timeToLiveNanos;
+
+    // Access ordered, eldest first
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Node> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    // Incremented on every invalidation, so that entries read before an invalidation are not cached after it
+    private long stamp = 0L;
+
+    // Statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an entry cache.
+     * <p/>
+     * @param maxSize the maximum number of distinguished names kept in the cache
+     * @param timeToLiveMillis the time to live of cached entries, in milliseconds
+     */
+    EntryCache(int maxSize, long timeToLiveMillis) {
+        this.maxSize = maxSize;
+        this.windowSize = Math.max(1, maxSize / 100);
+        this.timeToLiveNanos = timeToLiveMillis * 1000000L;
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Produces the cache key of a distinguished name.
+     * <p/>
+     * The values of the naming attributes in this domain (cn, ou, uid, dc) are all
+     * case insensitive, so the key is case insensitive as well.
+     */
+    static String keyOf(Dn dn) {
+        return dn.getNormName().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns a copy of the cached entry, or null if not cached (or expired).
+     */
+    synchronized Entry get(String dnKey, String viewKey) {
+        sketch.increment(dnKey);
+
+        Node node = window.get(dnKey);
+        if (null == node) {
+            node = main.get(dnKey);
+        }
+        if (null != node) {
+            View view = node.views.get(viewKey);
+            if (null != view) {
+                if (System.nanoTime() - view.expiresAt < 0) {
+                    hits.increment();
+                    return view.entry.clone();
+                }
+                node.views.remove(viewKey);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the current invalidation stamp, to be taken before reading an entry
+     * from the directory and passed to {@link #put(String, String, Entry, long)}.
+     */
+    synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Caches (a copy of) an entry, unless something was invalidated since the entry
+     * was read from the directory.
+     */
+    synchronized void put(String dnKey, String viewKey, Entry entry, long readStamp) {
+        if (readStamp != stamp) {
+            return; // possibly stale
+        }
+
+        View view = new View(entry.clone(), System.nanoTime() + timeToLiveNanos);
+
+        Node node = window.get(dnKey);
+        if (null == node) {
+            node = main.get(dnKey);
+        }
+        if (null != node) {
+            node.views.put(viewKey, view);
+            return;
+        }
+
+        node = new Node();
+        node.views.put(viewKey, view);
+        window.put(dnKey, node);
+
+        if (window.size() > windowSize) {
+            // Move the eldest object out of the window, into main if admitted
+            Iterator<Map.Entry<String, Node>> it = window.entrySet().iterator();
+            Map.Entry<String, Node> candidate = it.next();
+            it.remove();
+
+            if (main.size() < maxSize - windowSize) {
+                main.put(candidate.getKey(), candidate.getValue());
+            }
+            else {
+                Iterator<Map.Entry<String, Node>> mit = main.entrySet().iterator();
+                if (!mit.hasNext()) {
+                    evictions.increment(); // no room in main at all
+                    return;
+                }
+                Map.Entry<String, Node> victim = mit.next();
+                if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                    mit.remove();
+                    main.put(candidate.getKey(), candidate.getValue());
+                }
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Invalidates all cached views of a distinguished name.
+     */
+    synchronized void invalidate(String dnKey) {
+        stamp++;
+        if (null == window.remove(dnKey)) {
+            main.remove(dnKey);
+        }
+    }
+
+    /**
+     * Invalidates all cached entries.
+     */
+    public synchronized void clear() {
+        stamp++;
+        window.clear();
+        main.clear();
+    }
+
+    /**
+     * Returns the number of distinguished names currently in the cache.
+     */
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache.
+     */
+    public double getHitRate() {
+        long _hits = hits.sum();
+        long total = _hits + misses.sum();
+        return total == 0 ? 0.0 : (double) _hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+}
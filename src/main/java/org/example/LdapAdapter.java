@@ -1,21 +1,47 @@
 package org.example;
 
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.EventType;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequest;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequestImpl;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResponse;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResultCode;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
 import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.exception.LdapOperationException;
 import org.apache.directory.api.ldap.model.exception.LdapSchemaViolationException;
 import org.apache.directory.api.ldap.model.message.*;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
+import org.apache.directory.api.ldap.model.message.controls.SortRequestImpl;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.ldap.client.api.*;
+import org.apache.directory.ldap.client.api.future.AddFuture;
+import org.apache.directory.ldap.client.api.future.ModifyFuture;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Map;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -26,6 +52,10 @@ public class LdapAdapter implements AutoCloseable {
 
     static final Logger log = LoggerFactory.getLogger(LdapAdapter.class);
 
+    // Checked before allocating Flight Recorder events, so nothing is allocated unless recording
+    private static final EventType DIRECTORY_OPERATION_EVENTS = EventType.getEventType(DirectoryOperationEvent.class);
+    private static final EventType POOL_BORROW_EVENTS = EventType.getEventType(PoolBorrowEvent.class);
+
     /**
      * LDAP server host name (key).
      * <p/>
@@ -71,10 +101,210 @@ public class LdapAdapter implements AutoCloseable {
      */
     public static final String LDAP_READER_CREDENTIALS = "LDAP_READER_CREDENTIALS";
 
+    /**
+     * Maximum number of connections in the connection pool, in use or idle (key).
+     * <p/>
+     * A typical value is
+     * <I>"8"</I>
+     */
+    public static final String LDAP_POOL_MAX_ACTIVE = "LDAP_POOL_MAX_ACTIVE";
+
+    /**
+     * Maximum number of idle connections in the connection pool (key).
+     * <p/>
+     * A typical value is
+     * <I>"8"</I>
+     */
+    public static final String LDAP_POOL_MAX_IDLE = "LDAP_POOL_MAX_IDLE";
+
+    /**
+     * Minimum number of idle connections kept in the connection pool (key).
+     * Requires {@link #LDAP_POOL_KEEPALIVE_INTERVAL} to be effective.
+     * <p/>
+     * A typical value is
+     * <I>"2"</I>
+     */
+    public static final String LDAP_POOL_MIN_IDLE = "LDAP_POOL_MIN_IDLE";
+
+    /**
+     * Maximum time in milliseconds to wait for a connection when the connection pool
+     * is exhausted, -1 to wait indefinitely (key).
+     * <p/>
+     * A typical value is
+     * <I>"5000"</I>
+     */
+    public static final String LDAP_POOL_MAX_WAIT = "LDAP_POOL_MAX_WAIT";
+
+    /**
+     * When to validate pooled connections (key). One of
+     * <ul>
+     *     <li><I>"borrow"</I> - every time a connection is borrowed from the pool (costs
+     *     an extra round trip per operation)</li>
+     *     <li><I>"idle"</I> - in the background, while connections are idle in the pool,
+     *     every {@link #LDAP_POOL_KEEPALIVE_INTERVAL} milliseconds (every 30 seconds
+     *     unless configured)</li>
+     *     <li><I>"none"</I> - connections are never validated</li>
+     * </ul>
+     * <p/>
+     * A typical value is
+     * <I>"idle"</I>
+     */
+    public static final String LDAP_POOL_VALIDATION = "LDAP_POOL_VALIDATION";
+
+    /**
+     * Interval in milliseconds between background runs validating (and evicting) idle
+     * connections in the connection pool, 0 if there should be no background runs (key).
+     * Unless configured, there are no background runs (except when validating idle
+     * connections, see {@link #LDAP_POOL_VALIDATION}).
+     * <p/>
+     * A typical value is
+     * <I>"30000"</I>
+     */
+    public static final String LDAP_POOL_KEEPALIVE_INTERVAL = "LDAP_POOL_KEEPALIVE_INTERVAL";
+
+    /**
+     * Minimum time in milliseconds a connection may sit idle in the connection pool
+     * before being evicted by a background run (key).
+     * <p/>
+     * A typical value is
+     * <I>"300000"</I>
+     */
+    public static final String LDAP_POOL_EVICTABLE_IDLE_TIME = "LDAP_POOL_EVICTABLE_IDLE_TIME";
+
+    /**
+     * Number of threads carrying out asynchronous operations, i.e. the maximum number
+     * of asynchronous operations in progress at the same time (key).
+     * <p/>
+     * A typical value is
+     * <I>"4"</I>
+     */
+    public static final String LDAP_ASYNC_THREADS = "LDAP_ASYNC_THREADS";
+
+    /**
+     * Number of entries to request per page when searching, using the Simple Paged
+     * Results control (RFC 2696). Paging is not used if 0 (key).
+     * <p/>
+     * A typical value is
+     * <I>"500"</I>
+     */
+    public static final String LDAP_PAGE_SIZE = "LDAP_PAGE_SIZE";
+
+    /**
+     * Maximum number of requests outstanding on one connection when pipelining
+     * bulk operations (key).
+     * <p/>
+     * A typical value is
+     * <I>"16"</I>
+     */
+    public static final String LDAP_PIPELINE_WINDOW = "LDAP_PIPELINE_WINDOW";
+
+    /**
+     * Whether to collect metrics on directory operations and the connection pool (key).
+     * <p/>
+     * A typical value is
+     * <I>"true"</I>
+     */
+    public static final String LDAP_METRICS = "LDAP_METRICS";
+
+    /**
+     * Port on which to expose collected metrics over HTTP, in Prometheus text format,
+     * if metrics are collected. Metrics are not exposed over HTTP if 0 (key).
+     * <p/>
+     * A typical value is
+     * <I>"9464"</I>
+     */
+    public static final String LDAP_METRICS_PORT = "LDAP_METRICS_PORT";
+
+    /**
+     * Host name or address of the interface on which to expose collected metrics over HTTP
+     * (see {@link #LDAP_METRICS_PORT}). Defaults to the loopback interface, so metrics are
+     * not reachable from other hosts unless explicitly configured (key).
+     * <p/>
+     * A typical value is
+     * <I>"0.0.0.0"</I> (all interfaces)
+     */
+    public static final String LDAP_METRICS_HOST = "LDAP_METRICS_HOST";
+
+    /**
+     * Maximum number of objects (distinguished names) kept in the entry cache used for
+     * base scope searches. The cache is not used if 0 (key).
+     * <p/>
+     * A typical value is
+     * <I>"10000"</I>
+     */
+    public static final String LDAP_CACHE_SIZE = "LDAP_CACHE_SIZE";
+
+    /**
+     * Time to live in milliseconds of entries in the entry cache (key).
+     * <p/>
+     * A typical value is
+     * <I>"60000"</I>
+     */
+    public static final String LDAP_CACHE_TTL = "LDAP_CACHE_TTL";
+
+    /**
+     * Time in milliseconds during which an object found to be missing in a base scope
+     * search is known to be absent, and searches for it (or its descendants) are
+     * answered locally. Missing objects are not remembered if 0 (key).
+     * <p/>
+     * A typical value is
+     * <I>"5000"</I>
+     */
+    public static final String LDAP_NEGATIVE_CACHE_TTL = "LDAP_NEGATIVE_CACHE_TTL";
+
+    /**
+     * Maximum number of missing objects remembered (key).
+     * <p/>
+     * A typical value is
+     * <I>"10000"</I>
+     */
+    public static final String LDAP_NEGATIVE_CACHE_SIZE = "LDAP_NEGATIVE_CACHE_SIZE";
+
+    /**
+     * Threshold in milliseconds above which operations are logged to the slow operation
+     * log (see {@link SlowOperationLog}). Operations are not logged for being slow if 0 (key).
+     * <p/>
+     * A typical value is
+     * <I>"500"</I>
+     */
+    public static final String LDAP_SLOW_OPERATION_THRESHOLD = "LDAP_SLOW_OPERATION_THRESHOLD";
+
+    /**
+     * Share (0..1) of operations below the slow operation threshold that are logged to the
+     * slow operation log anyway, as a baseline to compare slow operations with (key).
+     * <p/>
+     * A typical value is
+     * <I>"0.001"</I>
+     */
+    public static final String LDAP_SLOW_OPERATION_SAMPLE_RATE = "LDAP_SLOW_OPERATION_SAMPLE_RATE";
+
     //
+    private final LdapConnectionConfig ldapConfig;
     private final LdapConnectionPool pool;
     private final String host;
     private final int port;
+    private final long timeout;
+    private final int pageSize;
+    private final int pipelineWindow;
+
+    // Completes futures of asynchronous operations
+    private final ExecutorService completions;
+
+    // Null if metrics are not collected
+    private final LdapMetrics metrics;
+    private final HttpServer metricsServer;
+
+    // Null if entries are not cached
+    private final EntryCache cache;
+
+    // Null if missing objects are not remembered
+    private final NegativeLookupCache negatives;
+
+    // Null if operations are not logged
+    private final SlowOperationLog slowLog;
+
+    // Open subscriptions to changes, each with a dedicated connection
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
 
     /**
      * Creates an LDAP adapter for communicating with a directory service.
@@ -84,7 +314,7 @@ public class LdapAdapter implements AutoCloseable {
      */
     public LdapAdapter(Map<String, String> config) throws ConfigurationException {
 
-        LdapConnectionConfig ldapConfig = new LdapConnectionConfig();
+        ldapConfig = new LdapConnectionConfig();
 
         // LDAP server hostname
         String _host = config.getOrDefault(LDAP_HOST, "localhost");
@@ -125,19 +355,290 @@ public class LdapAdapter implements AutoCloseable {
             throw new ConfigurationException("No reader credentials was provided");
         }
         ldapConfig.setCredentials(_credentials);
+        timeout = ldapConfig.getTimeout();
+
+        // Paged searches
+        pageSize = getInteger(config, LDAP_PAGE_SIZE, 0);
+        if (pageSize < 0) {
+            String info = "Illegal page size \"" + pageSize + "\": must not be negative";
+            throw new ConfigurationException(info);
+        }
+
+        // Pipelined bulk operations
+        pipelineWindow = getInteger(config, LDAP_PIPELINE_WINDOW, 16);
+        if (pipelineWindow < 1) {
+            String info = "Illegal pipeline window \"" + pipelineWindow + "\": must be at least 1";
+            throw new ConfigurationException(info);
+        }
+
+        // Entry cache
+        int cacheSize = getInteger(config, LDAP_CACHE_SIZE, 0);
+        int cacheTtl = getInteger(config, LDAP_CACHE_TTL, 60000);
+        if (cacheSize < 0 || cacheTtl < 0) {
+            String info = "Illegal entry cache size \"" + cacheSize + "\" or time to live \"" + cacheTtl + "\": must not be negative";
+            throw new ConfigurationException(info);
+        }
+        cache = cacheSize > 0 && cacheTtl > 0 ? new EntryCache(cacheSize, cacheTtl) : null;
+
+        // Negative lookups
+        int negativeTtl = getInteger(config, LDAP_NEGATIVE_CACHE_TTL, 0);
+        int negativeSize = getInteger(config, LDAP_NEGATIVE_CACHE_SIZE, 10000);
+        if (negativeTtl < 0 || negativeSize < 0) {
+            String info = "Illegal negative cache size \"" + negativeSize + "\" or time to live \"" + negativeTtl + "\": must not be negative";
+            throw new ConfigurationException(info);
+        }
+        negatives = negativeTtl > 0 && negativeSize > 0 ? new NegativeLookupCache(negativeSize, negativeTtl) : null;
+
+        // Slow operation log
+        int slowThreshold = getInteger(config, LDAP_SLOW_OPERATION_THRESHOLD, 0);
+        double sampleRate;
+        String _sampleRate = config.getOrDefault(LDAP_SLOW_OPERATION_SAMPLE_RATE, "0");
+        try {
+            sampleRate = Double.parseDouble(_sampleRate.trim());
+        }
+        catch (NumberFormatException nfe) {
+            String info = "Illegal slow operation sample rate \"" + _sampleRate + "\": " + nfe.getMessage();
+            throw new ConfigurationException(info);
+        }
+        if (slowThreshold < 0 || sampleRate < 0.0 || sampleRate > 1.0) {
+            String info = "Illegal slow operation threshold \"" + slowThreshold + "\" or sample rate \"" + sampleRate + "\": ";
+            info += "threshold must not be negative and sample rate must be between 0 and 1";
+            throw new ConfigurationException(info);
+        }
+        slowLog = slowThreshold > 0 || sampleRate > 0.0 ? new SlowOperationLog(slowThreshold, sampleRate) : null;
+
+        // Threads carrying out asynchronous operations
+        int asyncThreads = getInteger(config, LDAP_ASYNC_THREADS, Runtime.getRuntime().availableProcessors());
+        if (asyncThreads < 1) {
+            String info = "Illegal number of asynchronous threads \"" + asyncThreads + "\": must be at least 1";
+            throw new ConfigurationException(info);
+        }
+
+        // Connection pool
+        int maxActive = getInteger(config, LDAP_POOL_MAX_ACTIVE, 8);
+        if (maxActive < 1) {
+            String info = "Illegal maximum number of pooled connections \"" + maxActive + "\": must be at least 1";
+            throw new ConfigurationException(info);
+        }
+        int maxIdle = getInteger(config, LDAP_POOL_MAX_IDLE, maxActive);
+        int minIdle = getInteger(config, LDAP_POOL_MIN_IDLE, 0);
+        int maxWait = getInteger(config, LDAP_POOL_MAX_WAIT, -1);
+
+        String validation = config.getOrDefault(LDAP_POOL_VALIDATION, "borrow").trim().toLowerCase();
+        switch (validation) {
+            case "borrow":
+            case "idle":
+            case "none":
+                break;
+
+            default:
+                String info = "Illegal pool validation mode \"" + validation + "\": expected one of borrow, idle or none";
+                throw new ConfigurationException(info);
+        }
+
+        // No background runs, unless asked for (explicitly or by validating idle connections)
+        int keepAliveInterval = getInteger(config, LDAP_POOL_KEEPALIVE_INTERVAL, "idle".equals(validation) ? 30000 : 0);
+        int evictableIdleTime = getInteger(config, LDAP_POOL_EVICTABLE_IDLE_TIME, 30 * 60 * 1000);
 
         //
         DefaultPoolableLdapConnectionFactory factory = new DefaultPoolableLdapConnectionFactory( ldapConfig );
         this.pool = new LdapConnectionPool( factory );
-        pool.setTestOnBorrow( true );
+        pool.setMaxTotal( maxActive );
+        pool.setMaxIdle( maxIdle );
+        pool.setMinIdle( minIdle );
+        pool.setMaxWait( Duration.ofMillis( maxWait ) ); // negative, i.e. -1, waits indefinitely
+        pool.setTestOnBorrow( "borrow".equals(validation) );
+        pool.setTestWhileIdle( "idle".equals(validation) );
+        if ( keepAliveInterval > 0 ) {
+            pool.setNumTestsPerEvictionRun( -1 ); // i.e. all idle connections
+            pool.setMinEvictableIdleTime( Duration.ofMillis( evictableIdleTime ) );
+            pool.setTimeBetweenEvictionRuns( Duration.ofMillis( keepAliveInterval ) );
+        }
+
+        log.debug("Connection pool towards {}:{} allows {} active ({} to {} idle) connections, validating on {}",
+                host, port, maxActive, minIdle, maxIdle, validation);
+
+        //
+        AtomicInteger threadCount = new AtomicInteger();
+        completions = Executors.newFixedThreadPool(asyncThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ldap-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Metrics
+        if (Boolean.parseBoolean(config.getOrDefault(LDAP_METRICS, "false").trim())) {
+            metrics = new LdapMetrics(pool);
+
+            int metricsPort = getInteger(config, LDAP_METRICS_PORT, 0);
+            if (metricsPort > 0) {
+                String metricsHost = config.getOrDefault(LDAP_METRICS_HOST, "127.0.0.1").trim();
+                try {
+                    metricsServer = metrics.serve(metricsHost, metricsPort);
+                    log.info("Exposing LDAP metrics on {}:{}", metricsHost, metricsPort);
+                }
+                catch (IOException ioe) {
+                    // The adapter is never handed out, so nobody else will close it
+                    completions.shutdown();
+                    pool.close();
+
+                    String info = "Could not expose metrics on " + metricsHost + ":" + metricsPort + ": " + ioe.getMessage();
+                    throw new ConfigurationException(info);
+                }
+            } else {
+                metricsServer = null;
+            }
+        } else {
+            metrics = null;
+            metricsServer = null;
+        }
     }
 
     public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        if (null != metricsServer) {
+            metricsServer.stop(/* delay in seconds */ 0);
+        }
+        if (null != completions) {
+            completions.shutdown();
+        }
         if (null != pool) {
             pool.close();
         }
     }
 
+    /**
+     * Retrieves an integer configuration value, falling back on a default value
+     * if not configured.
+     * <p/>
+     * @throws ConfigurationException if the value is not an integer
+     */
+    private static int getInteger(Map<String, String> config, String key, int defaultValue) throws ConfigurationException {
+        String _value = config.get(key);
+        if (null == _value || _value.length() == 0) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(_value.trim());
+        }
+        catch (NumberFormatException nfe) {
+            String info = "Illegal value for " + key + " \"" + _value + "\": " + nfe.getMessage();
+            throw new ConfigurationException(info);
+        }
+    }
+
+    /**
+     * Returns collected metrics, or null if metrics are not collected
+     * (see {@link #LDAP_METRICS}).
+     */
+    public LdapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the entry cache used for base scope searches, or null if entries are
+     * not cached (see {@link #LDAP_CACHE_SIZE}).
+     */
+    public EntryCache getEntryCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the cache of objects known to be missing, or null if missing objects are
+     * not remembered (see {@link #LDAP_NEGATIVE_CACHE_TTL}).
+     */
+    public NegativeLookupCache getNegativeLookupCache() {
+        return negatives;
+    }
+
+    /**
+     * Invalidates whatever is known locally about an object, after it has been written to.
+     */
+    private void invalidate(final Dn dn) {
+        if (null != cache && null != dn) {
+            cache.invalidate(EntryCache.keyOf(dn));
+        }
+        if (null != negatives && null != dn) {
+            negatives.invalidate(dn);
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     */
+    private LdapConnection borrowConnection() throws LdapException {
+        final boolean recording = POOL_BORROW_EVENTS.isEnabled();
+        if (null == metrics && null == slowLog && !recording) {
+            return pool.getConnection();
+        }
+
+        final PoolBorrowEvent event = recording ? new PoolBorrowEvent() : null;
+        if (recording) {
+            event.begin();
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            LdapConnection connection = pool.getConnection();
+            success = true;
+            return connection;
+        }
+        finally {
+            long nanos = System.nanoTime() - start;
+            if (null != metrics) {
+                metrics.recordBorrow(nanos, success);
+            }
+            if (null != slowLog) {
+                slowLog.recordPoolWait(nanos);
+            }
+            if (recording) {
+                event.complete(success, pool.getNumActive(), pool.getNumWaiters());
+            }
+        }
+    }
+
+    /**
+     * Releases a connection back to the pool.
+     */
+    private void releaseConnection(LdapConnection connection) throws LdapException {
+        pool.releaseConnection(connection);
+        if (null != metrics) {
+            metrics.recordRelease();
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections in the connection pool.
+     */
+    public int getPoolMaxActive() {
+        return pool.getMaxTotal();
+    }
+
+    /**
+     * Returns the configured page size used when searching, 0 if searches are not paged.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Determines the LDAP result code behind a failure, as found among its causes.
+     * <p/>
+     * @return the result code, or {@link ResultCodeEnum#OTHER} if the failure was not
+     * due to an unsuccessful LDAP operation
+     */
+    public static ResultCodeEnum getResultCode(Throwable failure) {
+        for (Throwable t = failure; null != t; t = t.getCause()) {
+            if (t instanceof LdapOperationException) {
+                return ((LdapOperationException) t).getResultCode();
+            }
+        }
+        return ResultCodeEnum.OTHER;
+    }
+
     /**
      * Retrieves the "simple" name "a" from the distinguished name
      * "ou=a, ou=b, dc=c"
@@ -149,6 +650,82 @@ public class LdapAdapter implements AutoCloseable {
         return name.getString();
     }
 
+    /**
+     * An instrumented operation
+     */
+    private interface Instrumented<T> {
+        T call() throws DirectoryException;
+    }
+
+    /**
+     * Is the adapter instrumented at all, i.e. are metrics collected, slow operations
+     * logged or Flight Recorder events recorded? If not, operations are carried out
+     * directly, sparing call sites from allocating an {@link Instrumented} call.
+     */
+    private boolean isInstrumented() {
+        return null != metrics || null != slowLog || DIRECTORY_OPERATION_EVENTS.isEnabled();
+    }
+
+    /**
+     * Carries out an operation, recording metrics (if collected), logging it to the
+     * slow operation log (if slow, or sampled) and emitting a Flight Recorder event
+     * (if enabled, see {@link DirectoryOperationEvent}).
+     * <p/>
+     * @param operation the kind of operation
+     * @param base the distinguished name operated on, or the base of a search
+     * @param request the search request, or null if not a search
+     * @param entriesOf determines the number of entries in the outcome
+     * @param call the operation
+     */
+    private <T> T instrument(
+            final LdapMetrics.Operation operation, final Dn base, final SearchRequest request,
+            final ToLongFunction<T> entriesOf, final Instrumented<T> call
+    ) throws DirectoryException {
+        final boolean recording = DIRECTORY_OPERATION_EVENTS.isEnabled();
+        if (null == metrics && null == slowLog && !recording) {
+            return call.call();
+        }
+
+        final SearchScope scope = null != request ? request.getScope() : null;
+        final SlowOperationLog.Trace trace = null != slowLog ? slowLog.begin() : null;
+        final DirectoryOperationEvent event = recording ? new DirectoryOperationEvent() : null;
+        if (recording) {
+            event.start();
+        }
+        long start = System.nanoTime();
+        try {
+            T outcome = call.call();
+            if (null != metrics) {
+                metrics.record(operation, scope, System.nanoTime() - start);
+            }
+            if (null != trace) {
+                trace.addEntries(entriesOf.applyAsLong(outcome));
+                slowLog.end(trace, operation, base, request, null);
+            }
+            if (recording) {
+                event.complete(operation, base, request, entriesOf.applyAsLong(outcome), null);
+            }
+            return outcome;
+        }
+        catch (DirectoryException de) {
+            if (null != metrics) {
+                metrics.recordFailure(operation, scope, System.nanoTime() - start, de);
+            }
+            if (null != trace) {
+                slowLog.end(trace, operation, base, request, de);
+            }
+            if (recording) {
+                event.complete(operation, base, request, 0L, de);
+            }
+            throw de;
+        }
+        finally {
+            if (null != trace) {
+                slowLog.detach();
+            }
+        }
+    }
+
     /**
      * An LDAP creation functor
      */
@@ -164,7 +741,7 @@ public class LdapAdapter implements AutoCloseable {
     private Entry createObject(Create call) throws DirectoryException {
         LdapConnection connection = null;
         try {
-            connection = pool.getConnection();
+            connection = borrowConnection();
             call.createUsing(connection);
         }
         catch (LdapInvalidDnException e) {
@@ -194,7 +771,7 @@ public class LdapAdapter implements AutoCloseable {
         }
         finally {
             if (null != connection) {
-                try { pool.releaseConnection(connection); }
+                try { releaseConnection(connection); }
                 catch (Exception e) {
                     String info = "Could not release connection back to pool: " + e.getMessage();
                     throw new DirectoryConnectionException(info, e);
@@ -208,25 +785,190 @@ public class LdapAdapter implements AutoCloseable {
      * Creates an object.
      */
     public void createObject(final DefaultEntry entry) throws DirectoryException {
-        createObject(connection -> connection.add(entry));
+        try {
+            createOneObject(entry);
+        }
+        finally {
+            invalidate(entry.getDn());
+        }
+    }
+
+    private void createOneObject(final DefaultEntry entry) throws DirectoryException {
+        if (!isInstrumented()) {
+            createObject(connection -> connection.add(entry));
+            return;
+        }
+        instrument(LdapMetrics.Operation.CREATE, entry.getDn(), null, none -> 0L,
+                () -> createObject(connection -> connection.add(entry)));
     }
 
     /**
-     * An LDAP alteration functor
+     * Outcome of creating an object in bulk
      */
-    private interface Alter {
-        ModifyResponse alterUsing(final LdapConnection connection) throws LdapException;
+    public enum CreateOutcome {
+        CREATED,
+        ALREADY_EXISTS
     }
 
     /**
-     * Create an object.
-     * <p/>
-     * @throws DirectoryException
+     * An add request that has been sent, but not yet replied to
      */
-    private void alterObject(Alter call) throws DirectoryException {
-        LdapConnection connection = null;
-        try {
-            connection = pool.getConnection();
+    private static final class PendingAdd {
+        private final DefaultEntry entry;
+        private final AddFuture future;
+
+        private PendingAdd(DefaultEntry entry, AddFuture future) {
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Creates objects in bulk.
+     * <p/>
+     * Add requests are pipelined on one connection, with at most {@link #LDAP_PIPELINE_WINDOW}
+     * requests outstanding at any time, so creating N objects costs roughly N/window round
+     * trips rather than N. Parents are created before their children: objects are sent in
+     * order of depth and all objects at one depth are completed before objects at the
+     * next depth are sent. Children of objects that could not be created are not sent.
+     * <p/>
+     * Failing to create an object does not stop the bulk operation, but is reported among
+     * the outcomes. An object that already exists is not considered a failure.
+     * <p/>
+     * @param entries the objects to create
+     * @return the outcome per object (keyed by distinguished name), in the order of the entries
+     * @throws DirectoryException if the bulk operation could not be carried out at all
+     */
+    public Map<String, BatchResult<CreateOutcome>> createObjects(final Collection<DefaultEntry> entries) throws DirectoryException {
+        if (!isInstrumented()) {
+            return createAllObjects(entries);
+        }
+        return instrument(LdapMetrics.Operation.CREATE_ALL, null, null, Map::size, () -> createAllObjects(entries));
+    }
+
+    private Map<String, BatchResult<CreateOutcome>> createAllObjects(final Collection<DefaultEntry> entries) throws DirectoryException {
+        Map<String, BatchResult<CreateOutcome>> outcomes = new HashMap<>();
+        Set<String> failed = new HashSet<>(); // normalized DNs
+
+        List<DefaultEntry> ordered = new ArrayList<>(entries);
+        ordered.sort(Comparator.comparingInt(entry -> entry.getDn().size())); // stable, parents first
+
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+            if (!(connection instanceof LdapAsyncConnection)) {
+                String info = "Pooled connection does not support asynchronous operations: " + connection.getClass().getName();
+                throw new DirectoryConnectionException(info);
+            }
+            LdapAsyncConnection asyncConnection = (LdapAsyncConnection) connection;
+
+            Deque<PendingAdd> inflight = new ArrayDeque<>();
+            int depth = -1;
+            for (DefaultEntry entry : ordered) {
+                Dn dn = entry.getDn();
+                if (dn.size() != depth) {
+                    // Complete all objects at the previous depth, before sending their children
+                    while (!inflight.isEmpty()) {
+                        complete(inflight.removeFirst(), outcomes, failed);
+                    }
+                    depth = dn.size();
+                }
+
+                Dn parent = dn.getParent();
+                if (null != parent && failed.contains(parent.getNormName())) {
+                    String info = "Could not create object in directory: dn=\"" + dn + "\": parent object was not created";
+                    outcomes.put(dn.toString(), BatchResult.failure(new DirectoryWriteException(info, null)));
+                    failed.add(dn.getNormName());
+                    continue;
+                }
+
+                while (inflight.size() >= pipelineWindow) {
+                    complete(inflight.removeFirst(), outcomes, failed);
+                }
+
+                try {
+                    inflight.addLast(new PendingAdd(entry, asyncConnection.addAsync(entry)));
+                }
+                catch (LdapException e) {
+                    String info = "Could not create object in directory: dn=\"" + dn + "\": " + e.getMessage();
+                    outcomes.put(dn.toString(), BatchResult.failure(new DirectoryWriteException(info, e)));
+                    failed.add(dn.getNormName());
+                }
+            }
+            while (!inflight.isEmpty()) {
+                complete(inflight.removeFirst(), outcomes, failed);
+            }
+        }
+        catch (DirectoryException de) {
+            throw de;
+        }
+        catch (Throwable t) {
+            String info = "Could not create objects in directory: " + t.getMessage();
+            throw new DirectoryWriteException(info, t);
+        }
+        finally {
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+        }
+
+        // Report outcomes in the order of the entries
+        Map<String, BatchResult<CreateOutcome>> ordering = new LinkedHashMap<>();
+        for (DefaultEntry entry : entries) {
+            String dn = entry.getDn().toString();
+            ordering.put(dn, outcomes.get(dn));
+        }
+        return ordering;
+    }
+
+    /**
+     * Collects the outcome of a pipelined add request.
+     */
+    private void complete(
+            final PendingAdd pending, final Map<String, BatchResult<CreateOutcome>> outcomes, final Set<String> failed
+    ) {
+        Dn dn = pending.entry.getDn();
+        invalidate(dn);
+        try {
+            AddResponse response = await(pending.future);
+            ResultCodeEnum rc = response.getLdapResult().getResultCode();
+            if (ResultCodeEnum.SUCCESS == rc) {
+                outcomes.put(dn.toString(), BatchResult.success(CreateOutcome.CREATED));
+            }
+            else if (ResultCodeEnum.ENTRY_ALREADY_EXISTS == rc) {
+                outcomes.put(dn.toString(), BatchResult.success(CreateOutcome.ALREADY_EXISTS));
+            }
+            else {
+                verify(response); // throws
+            }
+        }
+        catch (Exception e) {
+            String info = "Could not create object in directory: dn=\"" + dn + "\": " + e.getMessage();
+            outcomes.put(dn.toString(), BatchResult.failure(new DirectoryWriteException(info, e)));
+            failed.add(dn.getNormName());
+        }
+    }
+
+    /**
+     * An LDAP alteration functor
+     */
+    private interface Alter {
+        ModifyResponse alterUsing(final LdapConnection connection) throws LdapException;
+    }
+
+    /**
+     * Create an object.
+     * <p/>
+     * @throws DirectoryException
+     */
+    private void alterObject(Alter call) throws DirectoryException {
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
             ModifyResponse response = call.alterUsing(connection);
         }
         catch (Throwable t) {
@@ -235,7 +977,7 @@ public class LdapAdapter implements AutoCloseable {
         }
         finally {
             if (null != connection) {
-                try { pool.releaseConnection(connection); }
+                try { releaseConnection(connection); }
                 catch (Exception e) {
                     String info = "Could not release connection back to pool: " + e.getMessage();
                     throw new DirectoryConnectionException(info, e);
@@ -248,7 +990,23 @@ public class LdapAdapter implements AutoCloseable {
      * Alters an object.
      */
     public void alterObject(final ModifyRequest request) throws DirectoryException {
-        alterObject(connection -> connection.modify(request));
+        try {
+            alterOneObject(request);
+        }
+        finally {
+            invalidate(request.getName());
+        }
+    }
+
+    private void alterOneObject(final ModifyRequest request) throws DirectoryException {
+        if (!isInstrumented()) {
+            alterObject(connection -> connection.modify(request));
+            return;
+        }
+        instrument(LdapMetrics.Operation.ALTER, request.getName(), null, none -> 0L, () -> {
+            alterObject(connection -> connection.modify(request));
+            return null;
+        });
     }
 
 
@@ -267,14 +1025,25 @@ public class LdapAdapter implements AutoCloseable {
      * @throws DirectoryException
      */
     public Entry findObject(final Query call) throws DirectoryException {
+        return findObject(call, null);
+    }
+
+    /**
+     * Find _one_ object based on query, letting a consumer inspect the outcome of
+     * the search if no object was found.
+     */
+    private Entry findObject(final Query call, final Consumer<SearchResultDone> noneFound) throws DirectoryException {
         LdapConnection connection = null;
         try {
-            connection = pool.getConnection();
+            connection = borrowConnection();
             try (SearchCursor cursor = call.queryUsing(connection)) {
                 if (cursor.next()) {
                     if (cursor.isEntry())
                         return ((SearchResultEntry) cursor.get()).getEntry();
                 }
+                else if (null != noneFound && null != cursor.getSearchResultDone()) {
+                    noneFound.accept(cursor.getSearchResultDone());
+                }
                 return null; // None found
             }
         }
@@ -284,7 +1053,7 @@ public class LdapAdapter implements AutoCloseable {
         }
         finally {
             if (null != connection) {
-                try { pool.releaseConnection(connection); }
+                try { releaseConnection(connection); }
                 catch (Exception e) {
                     String info = "Could not release connection back to pool: " + e.getMessage();
                     throw new DirectoryConnectionException(info, e);
@@ -304,7 +1073,7 @@ public class LdapAdapter implements AutoCloseable {
         Collection<Entry> entries = new LinkedList<>();
         LdapConnection connection = null;
         try {
-            connection = pool.getConnection();
+            connection = borrowConnection();
             SearchCursor cursor = call.queryUsing(connection);
             while (cursor.next()) {
                 if (cursor.isEntry()) {
@@ -320,7 +1089,7 @@ public class LdapAdapter implements AutoCloseable {
         }
         finally {
             if (null != connection) {
-                try { pool.releaseConnection(connection); }
+                try { releaseConnection(connection); }
                 catch (Exception e) {
                     String info = "Could not release connection back to pool: " + e.getMessage();
                     throw new DirectoryConnectionException(info, e);
@@ -331,18 +1100,993 @@ public class LdapAdapter implements AutoCloseable {
 
     /**
      * Finds (first) entry matching search request.
+     * <p/>
+     * Base scope searches are answered from the entry cache, if configured
+     * ({@link #LDAP_CACHE_SIZE}), and searches for objects recently found to be
+     * missing are answered locally, if configured ({@link #LDAP_NEGATIVE_CACHE_TTL}).
      */
     public Entry findObject(final SearchRequest request) throws DirectoryException {
-        return findObject(connection -> connection.search(request));
+        if (null != negatives && SearchScope.OBJECT == request.getScope() && negatives.isAbsent(request.getBase())) {
+            return null;
+        }
+        if (null == cache || SearchScope.OBJECT != request.getScope()) {
+            return findOneObject(request);
+        }
+
+        final String dnKey = EntryCache.keyOf(request.getBase());
+        final String viewKey = request.getFilter() + "|" + String.join(",", request.getAttributes());
+
+        Entry entry = cache.get(dnKey, viewKey);
+        if (null == entry) {
+            long stamp = cache.stamp();
+            entry = findOneObject(request);
+            if (null != entry) {
+                cache.put(dnKey, viewKey, entry, stamp);
+            }
+        }
+        return entry;
+    }
+
+    private Entry findOneObject(final SearchRequest request) throws DirectoryException {
+        Consumer<SearchResultDone> noneFound = null;
+        if (null != negatives && SearchScope.OBJECT == request.getScope()) {
+            final long stamp = negatives.stamp(); // before searching, so a concurrent creation is not missed
+            noneFound = done -> {
+                LdapResult result = done.getLdapResult();
+                if (ResultCodeEnum.NO_SUCH_OBJECT == result.getResultCode()) {
+                    negatives.recordAbsent(request.getBase(), result.getMatchedDn(), stamp);
+                }
+            };
+        }
+
+        final Consumer<SearchResultDone> _noneFound = noneFound;
+        if (!isInstrumented()) {
+            return findObject(connection -> connection.search(request), _noneFound);
+        }
+        return instrument(LdapMetrics.Operation.FIND, request.getBase(), request, entry -> null != entry ? 1L : 0L,
+                () -> findObject(connection -> connection.search(request), _noneFound));
     }
 
     /**
      * Finds all entries matching search request.
+     * <p/>
+     * If a page size is configured ({@link #LDAP_PAGE_SIZE}), entries are requested
+     * from the directory a page at a time.
      */
     public Collection<Entry> findObjects(final SearchRequest request) throws DirectoryException {
+        if (!isInstrumented()) {
+            return findAllObjects(request);
+        }
+        return instrument(LdapMetrics.Operation.FIND_ALL, request.getBase(), request, Collection::size,
+                () -> findAllObjects(request));
+    }
+
+    private Collection<Entry> findAllObjects(final SearchRequest request) throws DirectoryException {
+        if (pageSize > 0) {
+            Collection<Entry> entries = new LinkedList<>();
+            findObjects(request, pageSize, entries::addAll);
+            return entries;
+        }
         return findObjects(connection -> connection.search(request));
     }
 
+    /**
+     * A handler of pages of entries
+     */
+    public interface PageHandler {
+        void handle(final Collection<Entry> page) throws DirectoryException;
+    }
+
+    /**
+     * Finds all entries matching search request, requesting them from the directory
+     * in pages using the Simple Paged Results control (RFC 2696). Each page is handed
+     * to the handler as soon as it has arrived.
+     * <p/>
+     * All pages are requested on the same connection, carrying the cookie from page to
+     * page. A directory that does not support paging will return all entries in one page.
+     * The paging control is set on a copy of the search request, so the request itself
+     * may be shared between threads. If paging stops early (i.e. the handler throws), the
+     * paged search is ended in the directory.
+     * <p/>
+     * @param request the search request
+     * @param pageSize the (maximum) number of entries per page, or 0 if results should not be paged
+     * @param handler handles each page of entries
+     * @return the number of pages
+     * @throws DirectoryException
+     */
+    public int findObjects(final SearchRequest request, final int pageSize, final PageHandler handler) throws DirectoryException {
+        int pages = 0;
+        int count = 0;
+        byte[] cookie = null;
+
+        final SearchRequest paged = pageSize > 0 ? copyOf(request) : request;
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+            do {
+                if (pageSize > 0) {
+                    PagedResults control = new PagedResultsImpl();
+                    control.setSize(pageSize);
+                    control.setCookie(cookie);
+                    paged.addControl(control); // replaces control for previous page
+                }
+
+                Collection<Entry> page = new LinkedList<>();
+                try (SearchCursor cursor = connection.search(paged)) {
+                    while (cursor.next()) {
+                        if (cursor.isEntry()) {
+                            page.add(((SearchResultEntry) cursor.get()).getEntry());
+                        }
+                    }
+
+                    cookie = null;
+                    SearchResultDone done = cursor.getSearchResultDone();
+                    if (null != done) {
+                        ResultCodeEnum rc = done.getLdapResult().getResultCode();
+                        if (ResultCodeEnum.SUCCESS != rc && ResultCodeEnum.NO_SUCH_OBJECT != rc) {
+                            verify(done);
+                        }
+
+                        Control response = done.getControl(PagedResults.OID);
+                        if (response instanceof PagedResults) {
+                            cookie = ((PagedResults) response).getCookie();
+                        }
+                    }
+                }
+
+                pages++;
+                count += page.size();
+                handler.handle(page);
+
+            } while (null != cookie && cookie.length > 0);
+
+            log.debug("Found {} entries below \"{}\" in {} page(s) of (at most) {} entries",
+                    count, request.getBase(), pages, pageSize);
+            return pages;
+        }
+        catch (DirectoryException de) {
+            throw de;
+        }
+        catch (Throwable t) {
+            String info = "Could not find objects in directory (at page " + (pages + 1) + "): " + t.getMessage();
+            throw new DirectoryReadException(info, t);
+        }
+        finally {
+            if (null != cookie && cookie.length > 0 && null != connection) {
+                endPaging(connection, paged, cookie);
+            }
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+        }
+    }
+
+
+    /*
+     * Ends a paged search before the last page, by requesting a page of size 0 with the
+     * last cookie (RFC 2696), so that the directory can release the search.
+     */
+    private void endPaging(final LdapConnection connection, final SearchRequest paged, final byte[] cookie) {
+        PagedResults control = new PagedResultsImpl();
+        control.setSize(0);
+        control.setCookie(cookie);
+        paged.addControl(control);
+
+        try (SearchCursor cursor = connection.search(paged)) {
+            while (cursor.next()) {
+                // no entries expected
+            }
+        }
+        catch (Exception e) {
+            log.debug("Could not end paged search below \"{}\": {}", paged.getBase(), e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Copies a search request, so that controls can be set on the copy without
+     * affecting other threads using the same request.
+     */
+    private static SearchRequest copyOf(final SearchRequest request) {
+        return copyOf(request, request.getAttributes().toArray(new String[0]));
+    }
+
+    /*
+     * Copies a search request, requesting other attributes.
+     */
+    private static SearchRequest copyOf(final SearchRequest request, final String... attributes) {
+        SearchRequest copy = new SearchRequestImpl();
+        copy.setBase(request.getBase());
+        copy.setScope(request.getScope());
+        copy.setFilter(request.getFilter());
+        copy.setDerefAliases(request.getDerefAliases());
+        copy.setSizeLimit(request.getSizeLimit());
+        copy.setTimeLimit(request.getTimeLimit());
+        copy.setTypesOnly(request.getTypesOnly());
+        copy.addAttributes(attributes);
+        for (Control control : request.getControls().values()) {
+            copy.addControl(control);
+        }
+        return copy;
+    }
+
+    /**
+     * Counts the entries matching search request, without keeping them.
+     * <p/>
+     * The search requests no attributes ("1.1") regardless of the attributes in the
+     * request, so only distinguished names are sent from the directory, and entries
+     * are discarded as they arrive. The search is paged if paging is configured.
+     * The search is carried out on a copy, so the request itself is left as it is.
+     * <p/>
+     * @param request the search request
+     * @return the number of matching entries (0 if the base does not exist)
+     * @throws DirectoryException
+     */
+    public long countObjects(final SearchRequest request) throws DirectoryException {
+        if (!isInstrumented()) {
+            return countAllObjects(request);
+        }
+        return instrument(LdapMetrics.Operation.COUNT, request.getBase(), request, Long::longValue,
+                () -> countAllObjects(request));
+    }
+
+    private long countAllObjects(final SearchRequest request) throws DirectoryException {
+        long count = 0L;
+        byte[] cookie = null;
+
+        // The caller's request is left as it is, since it may be in use by other threads
+        final SearchRequest counting = copyOf(request, SchemaConstants.NO_ATTRIBUTE);
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+            do {
+                if (pageSize > 0) {
+                    PagedResults control = new PagedResultsImpl();
+                    control.setSize(pageSize);
+                    control.setCookie(cookie);
+                    counting.addControl(control); // replaces control for previous page
+                }
+
+                try (SearchCursor cursor = connection.search(counting)) {
+                    while (cursor.next()) {
+                        if (cursor.isEntry()) {
+                            count++;
+                        }
+                    }
+
+                    cookie = null;
+                    SearchResultDone done = cursor.getSearchResultDone();
+                    if (null != done) {
+                        ResultCodeEnum rc = done.getLdapResult().getResultCode();
+                        if (ResultCodeEnum.SUCCESS != rc && ResultCodeEnum.NO_SUCH_OBJECT != rc) {
+                            verify(done);
+                        }
+
+                        Control response = done.getControl(PagedResults.OID);
+                        if (response instanceof PagedResults) {
+                            cookie = ((PagedResults) response).getCookie();
+                        }
+                    }
+                }
+            } while (null != cookie && cookie.length > 0);
+
+            return count;
+        }
+        catch (Throwable t) {
+            String info = "Could not count objects in directory: " + t.getMessage();
+            throw new DirectoryReadException(info, t);
+        }
+        finally {
+            if (null != cookie && cookie.length > 0 && null != connection) {
+                endPaging(connection, counting, cookie);
+            }
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds server side sorting (RFC 2891) to a search request.
+     * <p/>
+     * Sort keys are attribute names, optionally prefixed with "-" for descending
+     * order. The control is not critical, so a directory that does not support
+     * sorting returns results unsorted.
+     * <p/>
+     * @param request the search request
+     * @param sortKeys the sort keys, most significant first
+     * @return the search request
+     */
+    public static SearchRequest sortBy(final SearchRequest request, final String... sortKeys) {
+        request.addControl(sortControl(sortKeys));
+        return request;
+    }
+
+    private static SortRequest sortControl(final String... sortKeys) {
+        SortRequest control = new SortRequestImpl();
+        for (String key : sortKeys) {
+            boolean reverse = key.startsWith("-");
+            control.addSortKey(new SortKey(reverse ? key.substring(1) : key, /* matching rule */ null, reverse));
+        }
+        return control;
+    }
+
+    /**
+     * Finds a window of entries in a sorted search result, using the Virtual List
+     * View control (draft-ietf-ldapext-ldapv3-vlv) together with server side sorting.
+     * Only the entries in the window are sent from the directory.
+     * <p/>
+     * A directory that does not support virtual list views returns all entries,
+     * in which case the window is sorted and cut locally.
+     * <p/>
+     * @param request the search request
+     * @param offset the (zero based) position of the first entry in the window
+     * @param count the (maximum) number of entries in the window
+     * @param sortKeys the sort keys, most significant first (see {@link #sortBy(SearchRequest, String...)})
+     * @return the window, with an estimate of the total number of matching entries
+     * @throws DirectoryException
+     */
+    public ResultWindow<Entry> findWindow(
+            final SearchRequest request, final int offset, final int count, final String... sortKeys
+    ) throws DirectoryException {
+        if (offset < 0 || count < 1 || sortKeys.length == 0) {
+            throw new IllegalArgumentException("A window needs a non-negative offset, a positive count and at least one sort key");
+        }
+        if (!isInstrumented()) {
+            return findWindowUsing(request, offset, count, sortKeys);
+        }
+        return instrument(LdapMetrics.Operation.FIND_ALL, request.getBase(), request, window -> window.getItems().size(),
+                () -> findWindowUsing(request, offset, count, sortKeys));
+    }
+
+    private ResultWindow<Entry> findWindowUsing(
+            final SearchRequest request, final int offset, final int count, final String... sortKeys
+    ) throws DirectoryException {
+        // The caller's request is left as it is, since it may be in use by other threads
+        final SearchRequest windowed = copyOf(request);
+
+        SortRequest sort = sortControl(sortKeys);
+        windowed.addControl(sort);
+
+        VirtualListViewRequest vlv = new VirtualListViewRequestImpl();
+        vlv.setBeforeCount(0);
+        vlv.setAfterCount(count - 1);
+        vlv.setOffset(offset + 1); // one based
+        vlv.setContentCount(0); // i.e. let the directory estimate
+        windowed.addControl(vlv);
+
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+
+            List<Entry> entries = new ArrayList<>(count);
+            VirtualListViewResponse response = null;
+            try (SearchCursor cursor = connection.search(windowed)) {
+                while (cursor.next()) {
+                    if (cursor.isEntry()) {
+                        entries.add(((SearchResultEntry) cursor.get()).getEntry());
+                    }
+                }
+
+                SearchResultDone done = cursor.getSearchResultDone();
+                if (null != done) {
+                    ResultCodeEnum rc = done.getLdapResult().getResultCode();
+                    if (ResultCodeEnum.NO_SUCH_OBJECT == rc) {
+                        return new ResultWindow<>(Collections.emptyList(), offset, 0);
+                    }
+                    verify(done);
+
+                    Control control = done.getControl(VirtualListViewResponse.OID);
+                    if (control instanceof VirtualListViewResponse) {
+                        response = (VirtualListViewResponse) control;
+                    }
+                }
+            }
+
+            if (null != response) {
+                if (VirtualListViewResultCode.SUCCESS != response.getVirtualListViewResult()) {
+                    String info = "Could not find window of objects in directory: " + response.getVirtualListViewResult();
+                    throw new DirectoryReadException(info);
+                }
+                int position = Math.max(0, response.getTargetPosition() - 1);
+                return new ResultWindow<>(entries, position, response.getContentCount());
+            }
+
+            // Virtual list views not supported, so we got everything
+            log.debug("No virtual list view support for search below \"{}\", cutting window locally", request.getBase());
+            entries.sort(comparing(sortKeys));
+            int from = Math.min(offset, entries.size());
+            int to = Math.min(from + count, entries.size());
+            return new ResultWindow<>(new ArrayList<>(entries.subList(from, to)), from, entries.size());
+        }
+        catch (DirectoryException de) {
+            throw de;
+        }
+        catch (Throwable t) {
+            String info = "Could not find window of objects in directory: " + t.getMessage();
+            throw new DirectoryReadException(info, t);
+        }
+        finally {
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+        }
+    }
+
+    /*
+     * Orders entries locally, by (the first value of) the sort key attributes, case
+     * insensitively. Entries lacking an attribute are ordered last.
+     */
+    private static Comparator<Entry> comparing(final String... sortKeys) {
+        Comparator<Entry> comparator = null;
+        for (String key : sortKeys) {
+            boolean reverse = key.startsWith("-");
+            String attribute = reverse ? key.substring(1) : key;
+
+            Comparator<String> order = reverse ? String.CASE_INSENSITIVE_ORDER.reversed() : String.CASE_INSENSITIVE_ORDER;
+            Comparator<Entry> byKey = Comparator.comparing((Entry entry) -> {
+                Attribute a = entry.get(attribute);
+                Value value = null != a ? a.get() : null;
+                return null != value ? value.getString() : null;
+            }, Comparator.nullsLast(order));
+
+            comparator = null == comparator ? byKey : comparator.thenComparing(byKey);
+        }
+        return comparator;
+    }
+
+
+    /**
+     * Streams all entries matching search request.
+     * <p/>
+     * Entries are pulled lazily from the directory as the stream is consumed, so the
+     * first entry is available as soon as it arrives and entries need not be kept
+     * in memory all at once. The stream holds on to a pooled connection until it is
+     * closed, so it <b>must</b> be closed after use (i.e. using try-with-resources).
+     * <p/>
+     * Problems reading from the directory while consuming the stream are thrown as
+     * {@link UncheckedDirectoryException}.
+     * <p/>
+     * @param request the search request
+     * @return a (closeable) stream of entries
+     * @throws DirectoryException if the search could not be initiated
+     */
+    public Stream<Entry> streamObjects(final SearchRequest request) throws DirectoryException {
+        final SlowOperationLog.Trace trace = null != slowLog ? slowLog.begin() : null;
+        final long start = null != metrics ? System.nanoTime() : 0L;
+        final boolean recording = DIRECTORY_OPERATION_EVENTS.isEnabled();
+        final DirectoryOperationEvent event = recording ? new DirectoryOperationEvent() : null;
+        final long[] streamed = { 0L };
+        if (recording) {
+            event.start();
+        }
+
+        LdapConnection connection = null;
+        SearchCursor cursor = null;
+        try {
+            connection = borrowConnection();
+            cursor = connection.search(request);
+        }
+        catch (Throwable t) {
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+            String info = "Could not find objects in directory: " + t.getMessage();
+            DirectoryReadException dre = new DirectoryReadException(info, t);
+            if (null != metrics) {
+                metrics.recordFailure(LdapMetrics.Operation.FIND_ALL, request.getScope(), System.nanoTime() - start, dre);
+            }
+            if (null != trace) {
+                slowLog.end(trace, LdapMetrics.Operation.FIND_ALL, request.getBase(), request, dre);
+            }
+            if (recording) {
+                event.complete(LdapMetrics.Operation.FIND_ALL, request.getBase(), request, 0L, dre);
+            }
+            throw dre;
+        }
+        finally {
+            if (null != trace) {
+                slowLog.detach(); // the stream may be consumed elsewhere
+            }
+        }
+
+        final LdapConnection borrowed = connection;
+        final SearchCursor results = cursor;
+
+        Spliterator<Entry> entries = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL
+        ) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Entry> action) {
+                try {
+                    while (results.next()) {
+                        if (results.isEntry()) {
+                            if (null != trace) {
+                                trace.addEntries(1L);
+                            }
+                            streamed[0]++;
+                            action.accept(((SearchResultEntry) results.get()).getEntry());
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                catch (LdapException | CursorException e) {
+                    String info = "Could not find objects in directory: " + e.getMessage();
+                    throw new UncheckedDirectoryException(new DirectoryReadException(info, e));
+                }
+            }
+        };
+
+        return StreamSupport.stream(entries, /* parallel? */ false).onClose(() -> {
+            try {
+                results.close();
+            }
+            catch (Exception e) {
+                log.debug("Could not close search cursor: {}", e.getMessage(), e);
+            }
+            finally {
+                if (null != metrics) {
+                    metrics.record(LdapMetrics.Operation.FIND_ALL, request.getScope(), System.nanoTime() - start);
+                }
+                if (null != trace) {
+                    slowLog.end(trace, LdapMetrics.Operation.FIND_ALL, request.getBase(), request, null);
+                }
+                if (recording) {
+                    event.complete(LdapMetrics.Operation.FIND_ALL, request.getBase(), request, streamed[0], null);
+                }
+                try { releaseConnection(borrowed); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new UncheckedDirectoryException(new DirectoryConnectionException(info, e));
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Subscribes to changes of entries matching a filter, using the Persistent Search
+     * control.
+     * <p/>
+     * The subscription uses a dedicated connection, outside of the connection pool,
+     * and re-subscribes (with backoff) if the connection is lost. Changes reported
+     * through the subscription also invalidate the affected entries in the caches of
+     * this adapter, before the listener is called.
+     * <p/>
+     * @param baseDn the base of the subtree of interest
+     * @param scope the scope of the subscription
+     * @param filter identifies entries of interest
+     * @param listener receives changes
+     * @return the subscription, which must be closed when no longer needed (it is closed when the adapter is closed)
+     * @throws ConfigurationException if the base or filter are invalid
+     */
+    public Subscription subscribe(
+            final String baseDn, final SearchScope scope, final String filter, final DirectoryChangeListener listener
+    ) throws ConfigurationException {
+        SearchRequest req = search(baseDn, scope, filter, "*");
+
+        DirectoryChangeListener invalidating = new DirectoryChangeListener() {
+            @Override
+            public void entryAdded(Entry entry) {
+                invalidate(entry.getDn());
+                listener.entryAdded(entry);
+            }
+
+            @Override
+            public void entryModified(Entry entry) {
+                invalidate(entry.getDn());
+                listener.entryModified(entry);
+            }
+
+            @Override
+            public void entryDeleted(Entry entry) {
+                invalidate(entry.getDn());
+                listener.entryDeleted(entry);
+            }
+
+            @Override
+            public void entryMoved(Dn previousDn, Entry entry) {
+                invalidate(previousDn);
+                invalidate(entry.getDn());
+                listener.entryMoved(previousDn, entry);
+            }
+
+            @Override
+            public void resubscribed() {
+                // Changes may have been missed in between
+                if (null != cache) {
+                    cache.clear();
+                }
+                if (null != negatives) {
+                    negatives.clear();
+                }
+                listener.resubscribed();
+            }
+        };
+
+        Subscription subscription = new Subscription(ldapConfig, req, invalidating, subscriptions::remove);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+
+    /**
+     * An asynchronous LDAP request functor, issuing a request without
+     * waiting for the response.
+     */
+    private interface Dispatch<F> {
+        F dispatchUsing(final LdapAsyncConnection connection) throws LdapException;
+    }
+
+    /**
+     * An asynchronous LDAP response functor, collecting the response(s) to
+     * a previously dispatched request.
+     */
+    private interface Complete<F, T> {
+        T completeUsing(final F future) throws Exception;
+    }
+
+    /**
+     * Borrows a pooled connection, dispatches a request on it and collects the
+     * response(s), all on one of the completion threads.
+     * <p/>
+     * The caller never waits, neither for a pooled connection nor for the directory.
+     * The LDAP API only offers blocking futures for responses, so the completion thread
+     * that dispatched a request also collects its response(s) (waiting at most the
+     * configured connection timeout for each of them). Since a completion thread holds
+     * a connection only while it carries out the whole operation, connections are always
+     * returned to the pool, no matter how many operations are queued. The connection is
+     * released back to the pool (and the operation instrumented) before the returned
+     * future completes.
+     * <p/>
+     * @param operation the kind of operation
+     * @param base the distinguished name operated on, or the base of a search
+     * @param request the search request, or null if not a search
+     * @param entriesOf determines the number of entries in the outcome
+     * @param dispatch issues the request
+     * @param complete collects the response(s)
+     * @param description describes the operation in case of failure
+     * @param failure produces the exception that the future is completed with in case of failure
+     * @return a future completed with the outcome of the operation
+     */
+    private <F, T> CompletableFuture<T> dispatch(
+            final LdapMetrics.Operation operation, final Dn base, final SearchRequest request,
+            final ToLongFunction<T> entriesOf, final Dispatch<F> dispatch, final Complete<F, T> complete,
+            final String description, final BiFunction<String, Throwable, DirectoryException> failure
+    ) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final String businessOperation = DIRECTORY_OPERATION_EVENTS.isEnabled() || POOL_BORROW_EVENTS.isEnabled()
+                ? BusinessOperation.current() : null; // carried over to the completion thread
+        try {
+            completions.execute(() -> {
+                try (BusinessOperation tag = BusinessOperation.resume(businessOperation)) {
+                    if (!isInstrumented()) {
+                        result.complete(carryOut(dispatch, complete, description, failure));
+                    }
+                    else {
+                        result.complete(instrument(operation, base, request, entriesOf,
+                                () -> carryOut(dispatch, complete, description, failure)));
+                    }
+                }
+                catch (DirectoryException de) {
+                    result.completeExceptionally(de);
+                }
+                catch (Throwable t) {
+                    // e.g. from instrumenting the operation; the future must complete regardless
+                    String info = description + ": " + t.getMessage();
+                    result.completeExceptionally(failure.apply(info, t));
+                }
+            });
+        }
+        catch (RejectedExecutionException ree) {
+            String info = description + ": adapter is closed";
+            result.completeExceptionally(new DirectoryConnectionException(info, ree));
+        }
+        return result;
+    }
+
+    /**
+     * Carries out an asynchronous operation, on the current (completion) thread.
+     */
+    private <F, T> T carryOut(
+            final Dispatch<F> dispatch, final Complete<F, T> complete,
+            final String description, final BiFunction<String, Throwable, DirectoryException> failure
+    ) throws DirectoryException {
+        T value = null;
+        DirectoryException problem = null;
+
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+            if (!(connection instanceof LdapAsyncConnection)) {
+                String info = "Pooled connection does not support asynchronous operations: " + connection.getClass().getName();
+                throw new DirectoryConnectionException(info);
+            }
+
+            F future = dispatch.dispatchUsing((LdapAsyncConnection) connection);
+            value = complete.completeUsing(future);
+        }
+        catch (DirectoryException de) {
+            problem = de;
+        }
+        catch (Throwable t) {
+            String info = description + ": " + t.getMessage();
+            problem = failure.apply(info, t);
+        }
+        finally {
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    if (null == problem) {
+                        String info = "Could not release connection back to pool: " + e.getMessage();
+                        problem = new DirectoryConnectionException(info, e);
+                    }
+                }
+            }
+        }
+
+        if (null != problem) {
+            throw problem;
+        }
+        return value;
+    }
+
+    /**
+     * Waits (at most the configured connection timeout) for the next response to a
+     * dispatched request.
+     */
+    private <R extends Response> R await(final ResponseFuture<R> future) throws Exception {
+        R response = future.get(timeout, TimeUnit.MILLISECONDS);
+        if (null == response) {
+            future.cancel(true);
+            throw new LdapException("Timed out waiting for response from directory (after " + timeout + " ms)");
+        }
+        return response;
+    }
+
+    /**
+     * Verifies the outcome of a dispatched request.
+     */
+    private static void verify(final ResultResponse response) throws LdapException {
+        LdapResult result = response.getLdapResult();
+        ResultCodeEnum rc = result.getResultCode();
+        if (ResultCodeEnum.SUCCESS != rc) {
+            String info = "result-code=" + rc.getResultCode() + " (" + rc.getMessage() + ")";
+            String diagnostics = result.getDiagnosticMessage();
+            if (null != diagnostics && diagnostics.length() > 0) {
+                info += ": " + diagnostics;
+            }
+            throw new LdapOperationException(rc, info);
+        }
+    }
+
+    /**
+     * Collects entries from a dispatched search.
+     * <p/>
+     * A search below a non-existing base is treated as a search without results, just
+     * as in the synchronous case.
+     * <p/>
+     * @param future the search future
+     * @param limit the maximum number of entries to keep (remaining entries are discarded)
+     */
+    private Collection<Entry> collect(final SearchFuture future, final int limit) throws Exception {
+        Collection<Entry> entries = new LinkedList<>();
+        while (true) {
+            Response response = await(future);
+            if (response instanceof SearchResultEntry) {
+                if (entries.size() < limit) {
+                    entries.add(((SearchResultEntry) response).getEntry());
+                }
+            }
+            else if (response instanceof SearchResultDone) {
+                SearchResultDone done = (SearchResultDone) response;
+                if (ResultCodeEnum.NO_SUCH_OBJECT != done.getLdapResult().getResultCode()) {
+                    verify(done);
+                }
+                return entries;
+            }
+            // Referrals and intermediate responses are ignored
+        }
+    }
+
+    /**
+     * Finds (first) entry matching search request, asynchronously.
+     * <p/>
+     * The returned future is completed with null if no entry was found, or completed
+     * exceptionally with a {@link DirectoryException}.
+     */
+    public CompletableFuture<Entry> findObjectAsync(final SearchRequest request) {
+        return dispatch(
+                LdapMetrics.Operation.FIND, request.getBase(), request, entry -> null != entry ? 1L : 0L,
+                connection -> connection.searchAsync(request),
+                (SearchFuture future) -> {
+                    Collection<Entry> entries = collect(future, 1);
+                    return entries.isEmpty() ? null : entries.iterator().next();
+                },
+                "Could not find object in directory",
+                DirectoryReadException::new
+        );
+    }
+
+    /**
+     * Finds all entries matching search request, asynchronously.
+     * <p/>
+     * The returned future is completed exceptionally with a {@link DirectoryException}
+     * on failure.
+     */
+    public CompletableFuture<Collection<Entry>> findObjectsAsync(final SearchRequest request) {
+        return dispatch(
+                LdapMetrics.Operation.FIND_ALL, request.getBase(), request, Collection::size,
+                connection -> connection.searchAsync(request),
+                (SearchFuture future) -> collect(future, Integer.MAX_VALUE),
+                "Could not find objects in directory",
+                DirectoryReadException::new
+        );
+    }
+
+    /**
+     * Creates an object, asynchronously.
+     * <p/>
+     * The returned future is completed exceptionally with a {@link DirectoryException}
+     * on failure.
+     */
+    public CompletableFuture<Void> createObjectAsync(final DefaultEntry entry) {
+        invalidate(entry.getDn());
+        return this.<AddFuture, Void>dispatch(
+                LdapMetrics.Operation.CREATE, entry.getDn(), null, none -> 0L,
+                connection -> connection.addAsync(entry),
+                (AddFuture future) -> {
+                    verify(await(future));
+                    return null;
+                },
+                "Could not create object in directory",
+                DirectoryWriteException::new
+        ).whenComplete((ignored, t) -> invalidate(entry.getDn()));
+    }
+
+    /**
+     * Alters an object, asynchronously.
+     * <p/>
+     * The returned future is completed exceptionally with a {@link DirectoryException}
+     * on failure.
+     */
+    public CompletableFuture<Void> alterObjectAsync(final ModifyRequest request) {
+        invalidate(request.getName());
+        return this.<ModifyFuture, Void>dispatch(
+                LdapMetrics.Operation.ALTER, request.getName(), null, none -> 0L,
+                connection -> connection.modifyAsync(request),
+                (ModifyFuture future) -> {
+                    verify(await(future));
+                    return null;
+                },
+                "Could not alter object in directory",
+                DirectoryWriteException::new
+        ).whenComplete((ignored, t) -> invalidate(request.getName()));
+    }
+
+
+    /**
+     * Checks whether objects, identified through their distinguished names, exist.
+     * <p/>
+     * All (base scope) searches are pipelined on one connection, requesting no attributes,
+     * with at most {@link #LDAP_PIPELINE_WINDOW} searches outstanding at any time. Checking
+     * N objects thus costs roughly N/window network round trips rather than N.
+     * <p/>
+     * @param dns distinguished names of the objects
+     * @return whether each object exists or not, in the order of the distinguished names
+     * @throws ConfigurationException if a distinguished name is invalid
+     * @throws DirectoryException
+     */
+    public Map<String, Boolean> existsAll(final Collection<String> dns) throws ConfigurationException, DirectoryException {
+        Map<String, Boolean> exists = new LinkedHashMap<>();
+        if (dns.isEmpty()) {
+            return exists;
+        }
+
+        // Prepare all requests up front, so that invalid DNs are reported before anything is sent
+        Map<String, SearchRequest> requests = new LinkedHashMap<>();
+        for (String dn : dns) {
+            if (!requests.containsKey(dn)) {
+                SearchRequest req = searchForDn(dn, "(objectClass=*)", SchemaConstants.NO_ATTRIBUTE);
+                req.setSizeLimit(1);
+                requests.put(dn, req);
+            }
+        }
+
+        // Objects known to be missing need not be searched for
+        if (null != negatives) {
+            for (Iterator<Map.Entry<String, SearchRequest>> it = requests.entrySet().iterator(); it.hasNext(); ) {
+                if (negatives.isAbsent(it.next().getValue().getBase())) {
+                    it.remove();
+                }
+            }
+            if (requests.isEmpty()) {
+                for (String dn : dns) {
+                    exists.put(dn, Boolean.FALSE);
+                }
+                return exists;
+            }
+        }
+
+        Map<String, Boolean> found = !isInstrumented() ? searchAll(requests)
+                : instrument(LdapMetrics.Operation.EXISTS_ALL, null, null,
+                        objects -> objects.values().stream().filter(Boolean::booleanValue).count(),
+                        () -> searchAll(requests));
+
+        // Report in the order of the distinguished names
+        for (String dn : dns) {
+            exists.put(dn, found.getOrDefault(dn, Boolean.FALSE));
+        }
+        return exists;
+    }
+
+    /**
+     * Pipelines all (base scope) searches on one connection and collects the replies,
+     * keeping track of whether each search found its object.
+     */
+    private Map<String, Boolean> searchAll(final Map<String, SearchRequest> requests) throws DirectoryException {
+        LdapConnection connection = null;
+        try {
+            connection = borrowConnection();
+            if (!(connection instanceof LdapAsyncConnection)) {
+                String info = "Pooled connection does not support asynchronous operations: " + connection.getClass().getName();
+                throw new DirectoryConnectionException(info);
+            }
+            LdapAsyncConnection asyncConnection = (LdapAsyncConnection) connection;
+
+            Map<String, Boolean> found = new HashMap<>();
+            Deque<Map.Entry<String, SearchFuture>> inflight = new ArrayDeque<>();
+            for (Map.Entry<String, SearchRequest> request : requests.entrySet()) {
+                // Keep the window bounded, collecting the oldest reply first
+                while (inflight.size() >= pipelineWindow) {
+                    Map.Entry<String, SearchFuture> pending = inflight.removeFirst();
+                    found.put(pending.getKey(), !collect(pending.getValue(), 1).isEmpty());
+                }
+                inflight.addLast(Map.entry(request.getKey(), asyncConnection.searchAsync(request.getValue())));
+            }
+
+            // Collect remaining replies
+            while (!inflight.isEmpty()) {
+                Map.Entry<String, SearchFuture> pending = inflight.removeFirst();
+                found.put(pending.getKey(), !collect(pending.getValue(), 1).isEmpty());
+            }
+            return found;
+        }
+        catch (DirectoryException de) {
+            throw de;
+        }
+        catch (Throwable t) {
+            String info = "Could not check existence of objects in directory: " + t.getMessage();
+            throw new DirectoryReadException(info, t);
+        }
+        finally {
+            if (null != connection) {
+                try { releaseConnection(connection); }
+                catch (Exception e) {
+                    String info = "Could not release connection back to pool: " + e.getMessage();
+                    throw new DirectoryConnectionException(info, e);
+                }
+            }
+        }
+    }
+
 
     /**
      * Creates a search request.
@@ -350,16 +2094,40 @@ public class LdapAdapter implements AutoCloseable {
      * @param baseDn
      * @param scope
      * @param filter
-     * @param attributes
+     * @param attributes the attributes to return, i.e. only those actually read - or
+     *                   {@link SchemaConstants#NO_ATTRIBUTE} ("1.1") if only the DN is needed
      * @return
      * @throws ConfigurationException
      */
     public SearchRequest search(
             final String baseDn, final SearchScope scope, final String filter, final String... attributes
+    ) throws ConfigurationException {
+        try {
+            return search(new Dn(baseDn), scope, filter, attributes);
+        }
+        catch (LdapInvalidDnException lide) {
+            String info = "Invalid DN: " + lide.getMessage();
+            throw new ConfigurationException(info);
+        }
+    }
+
+    /**
+     * Creates a search request, starting at an already parsed distinguished name.
+     * <p/>
+     * @param baseDn
+     * @param scope
+     * @param filter
+     * @param attributes the attributes to return, i.e. only those actually read - or
+     *                   {@link SchemaConstants#NO_ATTRIBUTE} ("1.1") if only the DN is needed
+     * @return
+     * @throws ConfigurationException
+     */
+    public SearchRequest search(
+            final Dn baseDn, final SearchScope scope, final String filter, final String... attributes
     ) throws ConfigurationException {
         SearchRequest req = new SearchRequestImpl();
         try {
-            req.setBase(new Dn(baseDn));
+            req.setBase(baseDn);
             req.setScope(scope);
             if (null != filter) {
                 req.setFilter(filter);
@@ -367,10 +2135,6 @@ public class LdapAdapter implements AutoCloseable {
             req.addAttributes(attributes);
             req.setTimeLimit(0);
         }
-        catch (LdapInvalidDnException lide) {
-            String info = "Invalid DN: " + lide.getMessage();
-            throw new ConfigurationException(info);
-        }
         catch (LdapException le) {
             String info = "Invalid filter: \"" + filter + "\": " + le.getMessage();
             throw new ConfigurationException(info);
@@ -393,6 +2157,12 @@ public class LdapAdapter implements AutoCloseable {
         return search(baseDn, SearchScope.OBJECT, filter, attributes);
     }
 
+    public SearchRequest searchForDn(
+            final Dn baseDn, final String filter, final String... attributes
+    ) throws ConfigurationException {
+        return search(baseDn, SearchScope.OBJECT, filter, attributes);
+    }
+
     /**
      * Creates a shallow search request for object matching a filter. The search starts at baseDN and
      * descends one level in the directory tree.
@@ -409,6 +2179,12 @@ public class LdapAdapter implements AutoCloseable {
         return search(baseDn, SearchScope.ONELEVEL, filter, attributes);
     }
 
+    public SearchRequest shallowSearchWithFilter(
+            final Dn baseDn, final String filter, final String... attributes
+    ) throws ConfigurationException {
+        return search(baseDn, SearchScope.ONELEVEL, filter, attributes);
+    }
+
     /**
      * Creates a deep search request for object matching a filter. The search starts at baseDN and
      * descends into the whole subtree of the directory tree.
@@ -425,6 +2201,12 @@ public class LdapAdapter implements AutoCloseable {
         return search(baseDn, SearchScope.SUBTREE, filter, attributes);
     }
 
+    public SearchRequest deepSearchWithFilter(
+            final Dn baseDn, final String filter, final String... attributes
+    ) throws ConfigurationException {
+        return search(baseDn, SearchScope.SUBTREE, filter, attributes);
+    }
+
     /**
      * Composes a string, based on a template and a list of name components.
      * <p/>
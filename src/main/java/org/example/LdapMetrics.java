@@ -0,0 +1,334 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.ldap.client.api.LdapConnectionPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Collects metrics on directory operations and on the connection pool of an
+ * {@link LdapAdapter}, and exposes them in the Prometheus text format.
+ * <p/>
+ * All counters and histograms are allocated up front, so recording does not
+ * allocate. When metrics are disabled, the adapter does not record anything
+ * at all (not even timestamps).
+ */
+public final class LdapMetrics {
+
+    /**
+     * Instrumented directory operations. Asynchronous operations are recorded as
+     * their synchronous counterparts, streamed searches as {@link #FIND_ALL} (when
+     * the stream is closed) and bulk operations once per call.
+     */
+    public enum Operation {
+        CREATE("create"),
+        ALTER("alter"),
+        FIND("find"),
+        FIND_ALL("find_all"),
+        COUNT("count"),
+        CREATE_ALL("create_all"),
+        EXISTS_ALL("exists_all");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Upper bounds of latency histogram buckets, in seconds
+    private static final double[] BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0
+    };
+
+    // Search scopes, with "none" for operations that are not searches
+    private static final String[] SCOPES = { "none", "base", "one", "sub" };
+
+    private static final ResultCodeEnum[] RESULT_CODES = ResultCodeEnum.values();
+
+    /**
+     * A latency histogram with fixed buckets
+     */
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1]; // last is +Inf
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            double seconds = nanos / 1.0e9;
+            int i = 0;
+            while (i < BUCKETS.length && seconds > BUCKETS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        private void write(StringBuilder out, String name, String labels) {
+            long cumulative = 0L;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+                out.append(name).append("_bucket{").append(labels);
+                if (labels.length() > 0) {
+                    out.append(',');
+                }
+                out.append("le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            String braced = labels.length() > 0 ? "{" + labels + "}" : "";
+            out.append(name).append("_sum").append(braced).append(' ').append(sumNanos.sum() / 1.0e9).append('\n');
+            out.append(name).append("_count").append(braced).append(' ').append(count.sum()).append('\n');
+        }
+    }
+
+    //
+    private final LdapConnectionPool pool;
+
+    // Per operation and search scope
+    private final Histogram[][] latencies;
+
+    // Per operation and result code
+    private final LongAdder[][] errors;
+
+    // Connection pool
+    private final Histogram borrows = new Histogram();
+    private final LongAdder borrowFailures = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+
+    LdapMetrics(LdapConnectionPool pool) {
+        this.pool = pool;
+
+        Operation[] operations = Operation.values();
+        latencies = new Histogram[operations.length][SCOPES.length];
+        errors = new LongAdder[operations.length][RESULT_CODES.length];
+        for (int i = 0; i < operations.length; i++) {
+            for (int j = 0; j < SCOPES.length; j++) {
+                latencies[i][j] = new Histogram();
+            }
+            for (int j = 0; j < RESULT_CODES.length; j++) {
+                errors[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    private static int scopeIndex(SearchScope scope) {
+        if (null == scope) {
+            return 0;
+        }
+        switch (scope) {
+            case OBJECT:
+                return 1;
+            case ONELEVEL:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * Records a successful operation.
+     */
+    void record(Operation operation, SearchScope scope, long nanos) {
+        latencies[operation.ordinal()][scopeIndex(scope)].record(nanos);
+    }
+
+    /**
+     * Records a failed operation, classified by the result code found among the
+     * causes of the failure (or {@link ResultCodeEnum#OTHER} if none).
+     */
+    void recordFailure(Operation operation, SearchScope scope, long nanos, Throwable failure) {
+        latencies[operation.ordinal()][scopeIndex(scope)].record(nanos);
+
+        ResultCodeEnum rc = LdapAdapter.getResultCode(failure);
+        errors[operation.ordinal()][rc.ordinal()].increment();
+    }
+
+    /**
+     * Records the time spent waiting for a connection from the pool.
+     */
+    void recordBorrow(long nanos, boolean success) {
+        borrows.record(nanos);
+        if (!success) {
+            borrowFailures.increment();
+        }
+    }
+
+    /**
+     * Records a connection being released back to the pool.
+     */
+    void recordRelease() {
+        releases.increment();
+    }
+
+    /**
+     * Returns the number of operations carried out.
+     */
+    public long getCount(Operation operation) {
+        long count = 0L;
+        for (Histogram histogram : latencies[operation.ordinal()]) {
+            count += histogram.count.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of failed operations.
+     */
+    public long getErrorCount(Operation operation) {
+        long count = 0L;
+        for (LongAdder adder : errors[operation.ordinal()]) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of times a connection was borrowed from the pool (or borrowing failed).
+     */
+    public long getBorrowCount() {
+        return borrows.count.sum();
+    }
+
+    /**
+     * Returns the total time spent waiting for connections from the pool, in nanoseconds.
+     */
+    public long getBorrowWaitNanos() {
+        return borrows.sumNanos.sum();
+    }
+
+    /**
+     * Returns the number of times a connection could not be borrowed from the pool,
+     * i.e. because the pool was exhausted for longer than the configured max wait.
+     */
+    public long getBorrowFailures() {
+        return borrowFailures.sum();
+    }
+
+    /**
+     * Returns the number of connections currently borrowed from the pool.
+     */
+    public int getActiveConnections() {
+        return pool.getNumActive();
+    }
+
+    /**
+     * Returns the number of idle connections currently in the pool.
+     */
+    public int getIdleConnections() {
+        return pool.getNumIdle();
+    }
+
+    /**
+     * Returns the number of threads currently waiting for a connection from the pool.
+     */
+    public int getWaitingForConnection() {
+        return pool.getNumWaiters();
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        Operation[] operations = Operation.values();
+
+        out.append("# HELP ldap_operation_duration_seconds Duration of directory operations\n");
+        out.append("# TYPE ldap_operation_duration_seconds histogram\n");
+        for (Operation operation : operations) {
+            for (int j = 0; j < SCOPES.length; j++) {
+                Histogram histogram = latencies[operation.ordinal()][j];
+                if (histogram.count.sum() > 0) {
+                    String labels = "operation=\"" + operation.getLabel() + "\",scope=\"" + SCOPES[j] + "\"";
+                    histogram.write(out, "ldap_operation_duration_seconds", labels);
+                }
+            }
+        }
+
+        out.append("# HELP ldap_operation_errors_total Failed directory operations, by result code\n");
+        out.append("# TYPE ldap_operation_errors_total counter\n");
+        for (Operation operation : operations) {
+            for (int j = 0; j < RESULT_CODES.length; j++) {
+                long count = errors[operation.ordinal()][j].sum();
+                if (count > 0) {
+                    out.append("ldap_operation_errors_total{operation=\"").append(operation.getLabel())
+                       .append("\",result_code=\"").append(RESULT_CODES[j].name().toLowerCase(Locale.ROOT))
+                       .append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+
+        out.append("# HELP ldap_pool_borrow_duration_seconds Time spent waiting for a pooled connection\n");
+        out.append("# TYPE ldap_pool_borrow_duration_seconds histogram\n");
+        borrows.write(out, "ldap_pool_borrow_duration_seconds", "");
+
+        out.append("# HELP ldap_pool_borrow_failures_total Failed attempts to borrow a pooled connection\n");
+        out.append("# TYPE ldap_pool_borrow_failures_total counter\n");
+        out.append("ldap_pool_borrow_failures_total ").append(borrowFailures.sum()).append('\n');
+
+        out.append("# HELP ldap_pool_releases_total Connections released back to the pool\n");
+        out.append("# TYPE ldap_pool_releases_total counter\n");
+        out.append("ldap_pool_releases_total ").append(releases.sum()).append('\n');
+
+        out.append("# HELP ldap_pool_connections Pooled connections, by state\n");
+        out.append("# TYPE ldap_pool_connections gauge\n");
+        out.append("ldap_pool_connections{state=\"active\"} ").append(getActiveConnections()).append('\n');
+        out.append("ldap_pool_connections{state=\"idle\"} ").append(getIdleConnections()).append('\n');
+
+        out.append("# HELP ldap_pool_waiters Threads waiting for a pooled connection\n");
+        out.append("# TYPE ldap_pool_waiters gauge\n");
+        out.append("ldap_pool_waiters ").append(getWaitingForConnection()).append('\n');
+
+        return out.toString();
+    }
+
+    /**
+     * Starts an embedded HTTP server, exposing metrics on "/metrics" in the
+     * Prometheus text format.
+     * <p/>
+     * @param host the host name or address of the interface to listen on
+     * @param port the port to listen on
+     * @return the started server, which the caller is responsible for stopping
+     * @throws IOException if the server could not be started
+     */
+    public HttpServer serve(String host, int port) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new IOException("Unknown host: " + host);
+        }
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            try {
+                byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+            finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+}
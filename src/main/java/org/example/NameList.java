@@ -0,0 +1,177 @@
+package org.example;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.stream.Collector;
+
+
+/**
+ * A compact, read-only list of names (i.e. user ids, group names or archive names),
+ * backed by an exactly sized array.
+ * <p/>
+ * A sorted list answers {@link #contains(Object)} using binary search. Lists are
+ * assembled using a {@link Builder}, which may drop duplicate names and intern the
+ * names it keeps.
+ */
+public final class NameList extends AbstractList<String> implements RandomAccess {
+
+    private static final String[] EMPTY = {};
+
+    private final String[] names;
+    private final boolean sorted;
+
+    private NameList(String[] names, boolean sorted) {
+        this.names = names;
+        this.sorted = sorted;
+    }
+
+    @Override
+    public String get(int index) {
+        return names[index];
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        if (sorted) {
+            return Arrays.binarySearch(names, o) >= 0;
+        }
+        return super.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (sorted && o instanceof String) {
+            int idx = Arrays.binarySearch(names, o);
+            if (idx < 0) {
+                return -1;
+            }
+            while (idx > 0 && names[idx - 1].equals(o)) {
+                idx--;
+            }
+            return idx;
+        }
+        return super.indexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return names.clone();
+    }
+
+    /**
+     * Is the list sorted (in natural, i.e. case sensitive, order)?
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns a builder, expecting about as many names as indicated.
+     */
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    /**
+     * Returns a collector assembling a sorted list without duplicates.
+     */
+    public static Collector<String, ?, NameList> toSortedList() {
+        return Collector.of(
+                () -> builder(16).deduplicate(),
+                Builder::add,
+                Builder::addAll,
+                Builder::buildSorted
+        );
+    }
+
+    /**
+     * Assembles a {@link NameList}.
+     */
+    public static final class Builder {
+        private String[] names;
+        private int size = 0;
+        private Set<String> seen = null; // if deduplicating
+        private boolean intern = false;
+
+        private Builder(int expectedSize) {
+            names = expectedSize > 0 ? new String[expectedSize] : EMPTY;
+        }
+
+        /**
+         * Drops names that were already added.
+         */
+        public Builder deduplicate() {
+            if (null == seen) {
+                seen = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    seen.add(names[i]);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Interns names, so that lists held at the same time share name instances.
+         */
+        public Builder intern() {
+            intern = true;
+            return this;
+        }
+
+        public Builder add(String name) {
+            if (null == name) {
+                return this;
+            }
+            if (null != seen && !seen.add(name)) {
+                return this;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, Math.max(16, size + (size >> 1)));
+            }
+            names[size++] = intern ? name.intern() : name;
+            return this;
+        }
+
+        private Builder addAll(Builder other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.names[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Builds a list, keeping names in the order they were added.
+         */
+        public NameList build() {
+            return new NameList(trimmed(), false);
+        }
+
+        /**
+         * Builds a sorted list.
+         */
+        public NameList buildSorted() {
+            String[] _names = trimmed();
+            Arrays.sort(_names);
+            return new NameList(_names, true);
+        }
+
+        private String[] trimmed() {
+            String[] _names = size == 0 ? EMPTY : (size == names.length ? names : Arrays.copyOf(names, size));
+            names = EMPTY; // the builder is spent
+            size = 0;
+            seen = null;
+            return _names;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A time-boxed cache of distinguished names known not to exist in the directory,
+ * used by {@link LdapAdapter} to answer repeated base scope searches for missing
+ * objects locally.
+ * <p/>
+ * When the directory reports an object as missing, it also reports the deepest
+ * existing ancestor (the "matched DN"). The topmost missing ancestor is recorded,
+ * which makes the whole subtree below it known to be absent. Each record expires
+ * after a fixed time to live, and creating an object through the adapter removes
+ * the records for the object and its ancestors. When the cache is full, expired
+ * records are purged and, failing that, the record closest to expiry is evicted.
+ * <p/>
+ * Lookups do not lock, while records and invalidations are serialized (on the cache).
+ */
+public final class NegativeLookupCache {
+
+    //
+    private final int maxSize;
+    private final long timeToLiveNanos;
+
+    // Normalized DN -> expiry time (in nanos)
+    private final Map<String, Long> absent = new ConcurrentHashMap<>();
+
+    // Incremented on every invalidation, so that searches issued before an invalidation are not recorded after it
+    private long stamp = 0L;
+
+    // Statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a negative lookup cache.
+     * <p/>
+     * @param maxSize the maximum number of distinguished names kept in the cache
+     * @param timeToLiveMillis the time during which a distinguished name is known to be absent, in milliseconds
+     */
+    NegativeLookupCache(int maxSize, long timeToLiveMillis) {
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLiveMillis * 1000000L;
+    }
+
+    /**
+     * Is an object (or one of its ancestors) known to be absent?
+     */
+    boolean isAbsent(Dn dn) {
+        if (absent.isEmpty()) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        for (Dn d = dn; null != d && !d.isEmpty(); d = d.getParent()) {
+            String key = EntryCache.keyOf(d);
+            Long expiresAt = absent.get(key);
+            if (null != expiresAt) {
+                if (now - expiresAt < 0) {
+                    hits.increment();
+                    return true;
+                }
+                absent.remove(key, expiresAt);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current invalidation stamp, to be taken before searching the directory
+     * and passed to {@link #recordAbsent(Dn, Dn, long)}.
+     */
+    synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Records an object as absent, together with all of its descendants, unless something
+     * was invalidated since the directory was searched.
+     * <p/>
+     * @param dn the searched (missing) object
+     * @param matchedDn the deepest existing ancestor of the object, as reported by the directory (may be null)
+     * @param searchStamp the invalidation stamp taken before the search
+     */
+    synchronized void recordAbsent(Dn dn, Dn matchedDn, long searchStamp) {
+        if (searchStamp != stamp) {
+            return; // possibly created since
+        }
+
+        Dn topmost = dn;
+        if (null != matchedDn && !matchedDn.isEmpty() && dn.isDescendantOf(matchedDn)) {
+            while (topmost.size() > matchedDn.size() + 1) {
+                topmost = topmost.getParent();
+            }
+        }
+
+        String key = EntryCache.keyOf(topmost);
+        if (!absent.containsKey(key) && absent.size() >= maxSize) {
+            makeRoom();
+        }
+        absent.put(key, System.nanoTime() + timeToLiveNanos);
+        records.increment();
+    }
+
+    /**
+     * Forgets that an object, and any of its ancestors, are absent (since the object
+     * was just created).
+     */
+    synchronized void invalidate(Dn dn) {
+        stamp++;
+        if (absent.isEmpty()) {
+            return;
+        }
+
+        for (Dn d = dn; null != d && !d.isEmpty(); d = d.getParent()) {
+            absent.remove(EntryCache.keyOf(d));
+        }
+    }
+
+    /**
+     * Removes expired records or, if none has expired, evicts the record closest
+     * to expiry (i.e. the eldest, since all records live equally long).
+     */
+    private void makeRoom() {
+        long now = System.nanoTime();
+        boolean purged = false;
+        Map.Entry<String, Long> eldest = null;
+        for (Iterator<Map.Entry<String, Long>> it = absent.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> record = it.next();
+            if (now - record.getValue() >= 0) {
+                it.remove();
+                purged = true;
+            }
+            else if (null == eldest || record.getValue() - eldest.getValue() < 0) {
+                eldest = record;
+            }
+        }
+
+        if (!purged && null != eldest) {
+            absent.remove(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Forgets about all absent objects.
+     */
+    public synchronized void clear() {
+        stamp++;
+        absent.clear();
+    }
+
+    /**
+     * Returns the number of distinguished names currently known to be absent.
+     */
+    public int size() {
+        return absent.size();
+    }
+
+    /**
+     * Returns the number of lookups answered as absent locally.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of absent objects recorded.
+     */
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    /**
+     * Returns the number of records evicted (before expiring) to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "NegativeLookupCache{size=" + size() + ", hits=" + getHitCount() + ", records=" + getRecordCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * A JDK Flight Recorder event, spanning the wait for a connection from the connection
+ * pool of {@link LdapAdapter}. The duration of the event is the wait.
+ */
+@Name("org.example.PoolBorrow")
+@Label("Connection Pool Borrow")
+@Category({"LDAP"})
+@Description("Waiting for a connection from the LDAP connection pool")
+final class PoolBorrowEvent extends Event {
+
+    @Label("Success")
+    @Description("Whether a connection was borrowed, or the wait failed (i.e. timed out)")
+    boolean success;
+
+    @Label("Active Connections")
+    @Description("Connections borrowed from the pool, after the wait")
+    int active;
+
+    @Label("Waiting Threads")
+    @Description("Threads waiting for a connection, after the wait")
+    int waiting;
+
+    @Label("Business Operation")
+    @Description("The ApplicationDomain method that needed the connection")
+    String businessOperation;
+
+    /**
+     * Ends the event and commits it, if it should be committed.
+     */
+    void complete(boolean success, int active, int waiting) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.success = success;
+        this.active = active;
+        this.waiting = waiting;
+        this.businessOperation = BusinessOperation.current();
+        commit();
+    }
+}
@@ -0,0 +1,70 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A window onto a sorted search result, i.e. one page of a listing, together with
+ * an estimate of the total number of items in the listing.
+ * <p/>
+ * The estimate is as reported by the directory, which may change between windows
+ * if the directory is modified in between.
+ */
+public final class ResultWindow<T> {
+
+    private final List<T> items;
+    private final int offset;
+    private final int estimatedTotal;
+
+    ResultWindow(List<T> items, int offset, int estimatedTotal) {
+        this.items = Collections.unmodifiableList(items);
+        this.offset = offset;
+        this.estimatedTotal = estimatedTotal;
+    }
+
+    /**
+     * Returns the items in the window, in sort order.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the (zero based) position of the first item of the window in the listing.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the estimated total number of items in the listing.
+     */
+    public int getEstimatedTotal() {
+        return estimatedTotal;
+    }
+
+    /**
+     * Are there (probably) more items after this window?
+     */
+    public boolean hasMore() {
+        return offset + items.size() < estimatedTotal;
+    }
+
+    /**
+     * Returns a window with the items transformed, i.e. from entries to names.
+     */
+    public <R> ResultWindow<R> map(Function<? super T, ? extends R> transform) {
+        List<R> _items = new ArrayList<>(items.size());
+        for (T item : items) {
+            _items.add(transform.apply(item));
+        }
+        return new ResultWindow<>(_items, offset, estimatedTotal);
+    }
+
+    @Override
+    public String toString() {
+        return "ResultWindow{offset=" + offset + ", size=" + items.size() + ", estimatedTotal=" + estimatedTotal + "}";
+    }
+}
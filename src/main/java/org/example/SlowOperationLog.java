@@ -0,0 +1,159 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Logs directory operations that take longer than a threshold, together with a
+ * sampled share of all other operations, used by {@link LdapAdapter} to find the
+ * base/scope/filter combinations behind a slow directory.
+ * <p/>
+ * Each operation is logged as one line in logfmt (key=value pairs) to a logger of
+ * its own ("org.example.SlowOperationLog"), so it can be routed and parsed separately
+ * from other logging, i.e.
+ * <pre>
+ *   op=find base="uid=tester,ou=Members,dc=test" scope=base filter="(objectClass=*)" attrs="1.1"
+ *   entries=1 result=success elapsed_ms=12.412 pool_wait_ms=0.031 server_ms=12.381 slow=true
+ * </pre>
+ * Pool wait is the time spent waiting for a pooled connection, and server time is the
+ * remaining time, i.e. time spent on the connection (including the network). For streamed
+ * searches, the time is measured until the stream is closed and includes consumption.
+ */
+public final class SlowOperationLog {
+    private static final Logger log = LoggerFactory.getLogger(SlowOperationLog.class);
+
+    /**
+     * Collects details of one operation, while it is carried out.
+     */
+    static final class Trace {
+        private final long start = System.nanoTime();
+        private long poolWaitNanos = 0L;
+        private long entries = 0L;
+
+        void addEntries(long count) {
+            entries += count;
+        }
+    }
+
+    //
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    // The trace of the operation being carried out by the current thread, if any
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+
+    /**
+     * Creates a slow operation log.
+     * <p/>
+     * @param thresholdMillis operations taking longer are always logged (none if 0)
+     * @param sampleRate share (0..1) of other operations that are logged
+     */
+    SlowOperationLog(long thresholdMillis, double sampleRate) {
+        this.thresholdNanos = thresholdMillis * 1000000L;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Starts tracing an operation on the current thread.
+     */
+    Trace begin() {
+        Trace trace = new Trace();
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Stops associating the trace with the current thread. The operation may still
+     * be going on (i.e. a stream being consumed).
+     */
+    void detach() {
+        current.remove();
+    }
+
+    /**
+     * Records time spent waiting for a pooled connection, by the operation on the
+     * current thread.
+     */
+    void recordPoolWait(long nanos) {
+        Trace trace = current.get();
+        if (null != trace) {
+            trace.poolWaitNanos += nanos;
+        }
+    }
+
+    /**
+     * Ends a traced operation, logging it if slow or sampled.
+     * <p/>
+     * @param trace the trace of the operation
+     * @param operation the kind of operation
+     * @param base the distinguished name operated on, or the base of a search
+     * @param request the search request, or null if not a search
+     * @param failure the cause if the operation failed, or null if successful
+     */
+    void end(Trace trace, LdapMetrics.Operation operation, Dn base, SearchRequest request, Throwable failure) {
+        long elapsed = System.nanoTime() - trace.start;
+        boolean slow = thresholdNanos > 0 && elapsed >= thresholdNanos;
+        if (!slow && (sampleRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder(256);
+        line.append("op=").append(operation.getLabel());
+        append(line, "base", null != base ? base.getName() : "");
+        if (null != request) {
+            line.append(" scope=").append(request.getScope().getLdapUrlValue());
+            append(line, "filter", String.valueOf(request.getFilter()));
+            append(line, "attrs", join(request.getAttributes().iterator()));
+            line.append(" entries=").append(trace.entries);
+        }
+        ResultCodeEnum rc = null == failure ? ResultCodeEnum.SUCCESS : LdapAdapter.getResultCode(failure);
+        line.append(" result=").append(rc.name().toLowerCase(Locale.ROOT));
+        line.append(" elapsed_ms=").append(millis(elapsed));
+        line.append(" pool_wait_ms=").append(millis(trace.poolWaitNanos));
+        line.append(" server_ms=").append(millis(Math.max(0L, elapsed - trace.poolWaitNanos)));
+        line.append(" slow=").append(slow);
+
+        log.info(line.toString());
+    }
+
+    private static String join(Iterator<String> values) {
+        StringBuilder joined = new StringBuilder();
+        while (values.hasNext()) {
+            joined.append(values.next());
+            if (values.hasNext()) {
+                joined.append(',');
+            }
+        }
+        return joined.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1.0e6);
+    }
+
+    /*
+     * Appends a quoted logfmt value, escaping quotes and backslashes.
+     */
+    private static void append(StringBuilder line, String key, String value) {
+        line.append(' ').append(key).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\');
+            }
+            line.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        line.append('"');
+    }
+}
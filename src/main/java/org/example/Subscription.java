@@ -0,0 +1,239 @@
+package org.example;
+
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapConnectionConfig;
+import org.apache.directory.ldap.client.api.LdapNetworkConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+
+/**
+ * A subscription to changes in the directory, using the Persistent Search control
+ * (draft-ietf-ldapext-psearch).
+ * <p/>
+ * The search runs on a dedicated connection, outside of the connection pool, on a
+ * thread of its own. If the connection is lost, the search is re-issued on a new
+ * connection after an exponentially increasing delay, and the listener is told so
+ * that it may discard state that could have gone stale in between.
+ * <p/>
+ * Changes are reported from when the subscription is established (see
+ * {@link #awaitSubscribed(long, TimeUnit)}) until the subscription is closed.
+ */
+public final class Subscription implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Subscription.class);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // Delays before re-subscribing, in milliseconds
+    private static final long MIN_BACKOFF = 100L;
+    private static final long MAX_BACKOFF = 30000L;
+
+    //
+    private final LdapConnectionConfig config;
+    private final SearchRequest request;
+    private final DirectoryChangeListener listener;
+    private final Consumer<Subscription> onClose;
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+    private volatile boolean subscribed = false;
+    private volatile LdapNetworkConnection connection = null;
+
+    // Released once the search is first issued
+    private final CountDownLatch established = new CountDownLatch(1);
+
+    /**
+     * Creates a subscription. Call {@link #start()} to start receiving changes.
+     * <p/>
+     * @param config the configuration of the (dedicated) connection
+     * @param request the search request, identifying the entries of interest
+     * @param listener receives changes
+     * @param onClose called when the subscription is closed
+     */
+    Subscription(
+            LdapConnectionConfig config, SearchRequest request,
+            DirectoryChangeListener listener, Consumer<Subscription> onClose
+    ) {
+        this.config = config;
+        this.request = request;
+        this.listener = listener;
+        this.onClose = onClose;
+
+        PersistentSearch psearch = new PersistentSearchImpl();
+        psearch.setChangesOnly(true);
+        psearch.setReturnECs(true);
+        psearch.setChangeTypes(ChangeType.ADD.getValue() | ChangeType.DELETE.getValue()
+                | ChangeType.MODIFY.getValue() | ChangeType.MODDN.getValue());
+        request.addControl(psearch);
+
+        thread = new Thread(this::run, "ldap-subscription-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Returns the base of the subscribed subtree.
+     */
+    public Dn getBase() {
+        return request.getBase();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Is the search currently in place, i.e. not (yet or again) connecting to the directory?
+     */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Waits for the subscription to be established, i.e. for the search to be issued
+     * for the first time. Changes made before then are not reported.
+     * <p/>
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if established, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSubscribed(long timeout, TimeUnit unit) throws InterruptedException {
+        return established.await(timeout, unit);
+    }
+
+    private void run() {
+        long backoff = MIN_BACKOFF;
+
+        while (!closed) {
+            LdapNetworkConnection _connection = new LdapNetworkConnection(config);
+            connection = _connection;
+            try {
+                _connection.bind();
+                _connection.setTimeOut(0); // wait for changes indefinitely
+
+                try (SearchCursor cursor = _connection.search(request)) {
+                    if (established.getCount() == 0) {
+                        log.info("Re-subscribed to changes below {}", request.getBase());
+                        listener.resubscribed();
+                    } else {
+                        log.debug("Subscribed to changes below {}", request.getBase());
+                    }
+                    subscribed = true;
+                    established.countDown();
+                    backoff = MIN_BACKOFF;
+
+                    while (!closed && cursor.next()) {
+                        Response response = cursor.get();
+                        if (response instanceof SearchResultEntry) {
+                            dispatch((SearchResultEntry) response);
+                        }
+                    }
+                }
+                if (!closed) {
+                    log.warn("Subscription to changes below {} was ended by the directory", request.getBase());
+                }
+            }
+            catch (Exception e) {
+                if (!closed) {
+                    log.warn("Subscription to changes below {} was interrupted: {}", request.getBase(), e.getMessage());
+                }
+            }
+            finally {
+                subscribed = false;
+                connection = null;
+                try {
+                    _connection.close();
+                }
+                catch (Exception e) {
+                    log.debug("Could not close subscription connection: {}", e.getMessage(), e);
+                }
+            }
+
+            if (!closed) {
+                try {
+                    Thread.sleep(backoff);
+                }
+                catch (InterruptedException ie) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+        log.debug("Unsubscribed from changes below {}", request.getBase());
+    }
+
+    private void dispatch(SearchResultEntry result) {
+        Entry entry = result.getEntry();
+        EntryChange change = (EntryChange) result.getControl(EntryChange.OID);
+        ChangeType type = null != change ? change.getChangeType() : ChangeType.MODIFY;
+
+        try {
+            switch (type) {
+                case ADD:
+                    listener.entryAdded(entry);
+                    break;
+
+                case DELETE:
+                    listener.entryDeleted(entry);
+                    break;
+
+                case MODDN:
+                    listener.entryMoved(change.getPreviousDn(), entry);
+                    break;
+
+                default:
+                    listener.entryModified(entry);
+                    break;
+            }
+        }
+        catch (RuntimeException re) {
+            log.warn("Listener failed to handle change ({}) of {}: {}", type, entry.getDn(), re.getMessage(), re);
+        }
+    }
+
+    /**
+     * Stops receiving changes and closes the dedicated connection.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        LdapNetworkConnection _connection = connection;
+        if (null != _connection) {
+            try {
+                _connection.close(); // unblocks a waiting search
+            }
+            catch (Exception e) {
+                log.debug("Could not close subscription connection: {}", e.getMessage(), e);
+            }
+        }
+        thread.interrupt();
+        onClose.accept(this);
+    }
+
+    @Override
+    public String toString() {
+        return "Subscription{base=" + request.getBase() + ", subscribed=" + subscribed + ", closed=" + closed + "}";
+    }
+}
@@ -0,0 +1,24 @@
+package org.example;
+
+/**
+ * Wraps a {@link DirectoryException} where checked exceptions can not be thrown,
+ * such as when consuming a {@link java.util.stream.Stream} of directory entries.
+ */
+public class UncheckedDirectoryException extends RuntimeException {
+
+    public UncheckedDirectoryException(DirectoryException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the wrapped directory exception.
+     */
+    @Override
+    public DirectoryException getCause() {
+        return (DirectoryException) super.getCause();
+    }
+}
+
+
+
+
@@ -0,0 +1,238 @@
+package org.example;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * Generates a synthetic, but deterministic, directory for scale testing. The same
+ * seed and sizes always give the same entries.
+ * <p/>
+ * The directory consists of
+ * <ul>
+ *     <li>users, "uid=user000042,ou=Members,dc=test",</li>
+ *     <li>global groups, "ou=group00017,ou=Groups,dc=test", with members
+ *         "cn=user000042,ou=group00017,ou=Groups,dc=test", and</li>
+ *     <li>archives, "ou=archive0003,ou=Archives,dc=test", with roles
+ *         "ou=role02,ou=Roles,ou=archive0003,ou=Archives,dc=test" and participants
+ *         "cn=user000042,ou=role02,ou=Roles,ou=archive0003,ou=Archives,dc=test".</li>
+ * </ul>
+ * Group and role sizes follow a Zipf distribution, so that a few groups are large and
+ * most are small: the group of rank k (starting at 1) has maxGroupSize / k^s members.
+ * Members are drawn at random among the users.
+ * <p/>
+ * Group memberships and role participations are dsGroupMember entries, referring to
+ * the user through memberObject, exactly as created by {@link ApplicationDomain}.
+ */
+public class DirectoryGenerator {
+
+    static final String USERS_CONTEXT = "ou=Members,dc=test";
+    static final String GROUPS_CONTEXT = "ou=Groups,dc=test";
+    static final String ARCHIVES_CONTEXT = "ou=Archives,dc=test";
+
+    /**
+     * Receives generated entries, parents before children.
+     */
+    public interface EntrySink {
+        void add(String dn, LocalLdapServer.EntryInitializer initializer) throws Exception;
+    }
+
+    private long seed = 4711L;
+    private int users = 100000;
+    private int groups = 5000;
+    private int maxGroupSize = 2000;
+    private int archives = 1000;
+    private int rolesPerArchive = 4;
+    private int maxRoleSize = 200;
+    private double zipfExponent = 1.0;
+
+    public DirectoryGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public DirectoryGenerator users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    public DirectoryGenerator groups(int groups, int maxGroupSize) {
+        this.groups = groups;
+        this.maxGroupSize = maxGroupSize;
+        return this;
+    }
+
+    public DirectoryGenerator archives(int archives, int rolesPerArchive, int maxRoleSize) {
+        this.archives = archives;
+        this.rolesPerArchive = rolesPerArchive;
+        this.maxRoleSize = maxRoleSize;
+        return this;
+    }
+
+    /**
+     * The exponent (s) of the Zipf distribution of group and role sizes. Zero gives
+     * equally sized groups, larger values concentrate members in fewer groups.
+     */
+    public DirectoryGenerator zipfExponent(double zipfExponent) {
+        this.zipfExponent = zipfExponent;
+        return this;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getGroups() {
+        return groups;
+    }
+
+    public int getArchives() {
+        return archives;
+    }
+
+    public int getRolesPerArchive() {
+        return rolesPerArchive;
+    }
+
+    public static String userId(int i) {
+        return String.format("user%06d", i);
+    }
+
+    public static String userDn(int i) {
+        return "uid=" + userId(i) + "," + USERS_CONTEXT;
+    }
+
+    /**
+     * Name of group of rank k, where the group of rank 1 is the largest.
+     */
+    public static String groupName(int k) {
+        return String.format("group%05d", k);
+    }
+
+    public static String archiveName(int i) {
+        return String.format("archive%04d", i);
+    }
+
+    /**
+     * Name of role of rank k (within each archive), where the role of rank 1 is the largest.
+     */
+    public static String roleName(int k) {
+        return String.format("role%02d", k);
+    }
+
+    /**
+     * Number of members in the group of rank k.
+     */
+    public int groupSize(int k) {
+        return zipfSize(maxGroupSize, k);
+    }
+
+    /**
+     * Number of participants in the role of rank k, in any archive.
+     */
+    public int roleSize(int k) {
+        return zipfSize(maxRoleSize, k);
+    }
+
+    private int zipfSize(int max, int rank) {
+        int size = (int) Math.round(max / Math.pow(rank, zipfExponent));
+        return Math.max(1, Math.min(size, users));
+    }
+
+    /**
+     * Total number of entries that {@link #generate} will produce.
+     */
+    public long size() {
+        long size = users;
+        for (int k = 1; k <= groups; k++) {
+            size += 1 + groupSize(k);
+        }
+        long perArchive = 2; // archive and roles base
+        for (int k = 1; k <= rolesPerArchive; k++) {
+            perArchive += 1 + roleSize(k);
+        }
+        return size + archives * perArchive;
+    }
+
+    /**
+     * Generates all entries, below the existing contexts for users, groups and archives.
+     */
+    public void generate(EntrySink sink) throws Exception {
+        final Random random = new Random(seed);
+
+        // --- Users ---
+        for (int i = 1; i <= users; i++) {
+            final String userId = userId(i);
+            sink.add(userDn(i), entry -> {
+                entry.add("objectClass", "top", "inetOrgPerson", "organizationalPerson", "person");
+                entry.add("uid", userId);
+                entry.add("cn", userId);
+                entry.add("sn", "User");
+            });
+        }
+
+        // --- Global groups, with members ---
+        for (int k = 1; k <= groups; k++) {
+            final String groupName = groupName(k);
+            final String groupDn = "ou=" + groupName + "," + GROUPS_CONTEXT;
+            sink.add(groupDn, entry -> {
+                entry.add("objectClass", "organizationalUnit");
+                entry.add("ou", groupName);
+            });
+            addMembers(sink, groupDn, sample(random, groupSize(k)));
+        }
+
+        // --- Archives, with roles and participants ---
+        for (int i = 1; i <= archives; i++) {
+            final String archiveName = archiveName(i);
+            final String archiveDn = "ou=" + archiveName + "," + ARCHIVES_CONTEXT;
+            sink.add(archiveDn, entry -> {
+                entry.add("objectClass", "organizationalUnit");
+                entry.add("ou", archiveName);
+            });
+
+            final String rolesDn = "ou=Roles," + archiveDn;
+            sink.add(rolesDn, entry -> {
+                entry.add("objectClass", "organizationalUnit");
+                entry.add("ou", "Roles");
+            });
+
+            for (int k = 1; k <= rolesPerArchive; k++) {
+                final String roleName = roleName(k);
+                final String roleDn = "ou=" + roleName + "," + rolesDn;
+                sink.add(roleDn, entry -> {
+                    entry.add("objectClass", "organizationalUnit");
+                    entry.add("ou", roleName);
+                });
+                addMembers(sink, roleDn, sample(random, roleSize(k)));
+            }
+        }
+    }
+
+    private void addMembers(EntrySink sink, String parentDn, Set<Integer> members) throws Exception {
+        for (int i : members) {
+            final String userId = userId(i);
+            final String userDn = userDn(i);
+            sink.add("cn=" + userId + "," + parentDn, entry -> {
+                entry.add("objectClass", "dsGroupMember");
+                entry.add("cn", userId);
+                entry.add("memberObject", userDn);
+            });
+        }
+    }
+
+    /*
+     * Draws distinct users (1..users) at random, using Floyd's algorithm.
+     */
+    private Set<Integer> sample(Random random, int count) {
+        Set<Integer> sample = new LinkedHashSet<>();
+        for (int j = users - count + 1; j <= users; j++) {
+            int candidate = 1 + random.nextInt(j);
+            if (!sample.add(candidate)) {
+                sample.add(j);
+            }
+        }
+        return sample;
+    }
+}
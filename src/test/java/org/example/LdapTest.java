@@ -4,13 +4,30 @@ package org.example;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class LdapTest extends TestCase {
     private static Logger log = LogManager.getLogger(LdapTest.class);
@@ -130,4 +147,635 @@ public class LdapTest extends TestCase {
             fail(e.getMessage());
         }
     }
+
+    public void testFindingUserAsynchronously() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            String userId = "tester"; // See line 122 in LocalLdapServer.java
+
+            System.out.println("Looking for user with id = " + userId);
+            System.out.println("  by means of LdapAdapter::findObjectAsync()");
+
+            final String filter = LdapAdapter.compose("(&(objectClass=%s)(%s=%s))", "inetOrgPerson", "uid", userId);
+            SearchRequest req = adapter.shallowSearchWithFilter("ou=Members,dc=test", filter, "uid");
+
+            Entry user = adapter.findObjectAsync(req).join();
+            if (null == user) {
+                fail("Could not locate user");
+            }
+            System.out.println("Found " + userId + " to be " + user.getDn() + " (a distinguished name)");
+
+            // Searching below a non-existing base is not an error
+            req = adapter.searchForDn("uid=nobody,ou=Members,dc=test", "(objectClass=*)", "uid");
+            assertNull(adapter.findObjectAsync(req).join());
+        }
+        catch (ConfigurationException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testStreamingUsers() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            System.out.println("Streaming users");
+            System.out.println("  by means of LdapAdapter::streamObjects()");
+
+            SearchRequest req = adapter.shallowSearchWithFilter("ou=Members,dc=test", "(objectClass=inetOrgPerson)", "uid");
+            try (Stream<Entry> users = adapter.streamObjects(req)) {
+                long count = users
+                        .peek(user -> System.out.println("Found " + user.getDn() + " (a distinguished name)"))
+                        .count();
+                assertEquals(1, count);
+            }
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testFindingUsersInBatch() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             ApplicationDomain appDomain = new ApplicationDomain(new HashMap<>(), adapter)) {
+
+            System.out.println("Looking for a batch of users");
+            System.out.println("  by means of ApplicationDomain::findUserDns()");
+
+            Map<String, BatchResult<String>> userDns = appDomain.findUserDns(List.of("tester", "nobody"));
+            assertEquals(2, userDns.size());
+            assertTrue(userDns.get("tester").isSuccess());
+            assertNotNull(userDns.get("tester").getValue());
+            assertTrue(userDns.get("nobody").isSuccess());
+            assertNull(userDns.get("nobody").getValue());
+        }
+        catch (ConfigurationException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testCreatingObjectsInBulk() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            String archiveName = "Bulk" + System.currentTimeMillis();
+            String archiveDn = "ou=" + archiveName + ",ou=Archives,dc=test";
+            String rolesDn = "ou=Roles," + archiveDn;
+            String invalidDn = "uid=invalid," + archiveDn;
+            String orphanDn = "ou=Orphan," + invalidDn;
+
+            // Children ahead of their parents, and an entry lacking mandatory attributes (cn, sn)
+            List<DefaultEntry> entries = List.of(
+                    new DefaultEntry(rolesDn, "objectClass: organizationalUnit", "ou: Roles"),
+                    new DefaultEntry(orphanDn, "objectClass: organizationalUnit", "ou: Orphan"),
+                    new DefaultEntry(archiveDn, "objectClass: organizationalUnit", "ou: " + archiveName),
+                    new DefaultEntry(invalidDn, "objectClass: inetOrgPerson", "uid: invalid")
+            );
+
+            Map<String, BatchResult<LdapAdapter.CreateOutcome>> outcomes = adapter.createObjects(entries);
+            System.out.println(outcomes);
+
+            // Outcomes are reported in the order of the entries...
+            assertEquals(List.of(rolesDn, orphanDn, archiveDn, invalidDn), new ArrayList<>(outcomes.keySet()));
+
+            // ...but parents were created ahead of their children
+            assertEquals(LdapAdapter.CreateOutcome.CREATED, outcomes.get(archiveDn).getValue());
+            assertEquals(LdapAdapter.CreateOutcome.CREATED, outcomes.get(rolesDn).getValue());
+
+            // The invalid entry failed, without stopping the batch, and its child was never sent
+            assertFalse(outcomes.get(invalidDn).isSuccess());
+            assertFalse(outcomes.get(orphanDn).isSuccess());
+
+            // Creating an existing object is not considered a failure
+            outcomes = adapter.createObjects(List.of(
+                    new DefaultEntry(archiveDn, "objectClass: organizationalUnit", "ou: " + archiveName)
+            ));
+            assertTrue(outcomes.get(archiveDn).isSuccess());
+            assertEquals(LdapAdapter.CreateOutcome.ALREADY_EXISTS, outcomes.get(archiveDn).getValue());
+        }
+        catch (ConfigurationException | DirectoryException | LdapException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testAssigningUserToRoleOptimistically() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See line 97 in LocalLdapServer.java
+                //
+                LdapAdapter.LDAP_METRICS, "true"
+        );
+
+        Map<String, String> config = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test",
+                ApplicationDomain.LDAP_OPTIMISTIC_CREATE, "true"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             ApplicationDomain appDomain = new ApplicationDomain(config, adapter)) {
+
+            String archiveName = "Optimistic" + System.currentTimeMillis();
+            appDomain.createArchive(archiveName);
+
+            LdapMetrics metrics = adapter.getMetrics();
+            long creates = metrics.getCount(LdapMetrics.Operation.CREATE);
+            assertEquals(0, metrics.getErrorCount(LdapMetrics.Operation.CREATE));
+
+            // Neither role nor roles container exist, so the participation and the role are
+            // refused (NO_SUCH_OBJECT) before the roles container, role and participation are created
+            String participationDn = appDomain.assignUserToRole("tester", "Reader", archiveName);
+            assertTrue(adapter.existsAll(List.of(participationDn)).get(participationDn));
+            assertEquals(creates + 5, metrics.getCount(LdapMetrics.Operation.CREATE));
+            assertEquals(2, metrics.getErrorCount(LdapMetrics.Operation.CREATE));
+
+            // The role now exists, so only the participation is created (the user is not verified)
+            participationDn = appDomain.assignUserToRole("guest", "Reader", archiveName);
+            assertTrue(adapter.existsAll(List.of(participationDn)).get(participationDn));
+            assertEquals(creates + 6, metrics.getCount(LdapMetrics.Operation.CREATE));
+            assertEquals(2, metrics.getErrorCount(LdapMetrics.Operation.CREATE));
+        }
+        catch (ConfigurationException | DirectoryException | InvalidParameterException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testAssigningUsersToRole() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        Map<String, String> config = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             ApplicationDomain appDomain = new ApplicationDomain(config, adapter)) {
+
+            String archiveName = "Batch" + System.currentTimeMillis();
+            appDomain.createArchive(archiveName);
+
+            List<String> userIds = List.of("nobody", "tester", "ghost");
+            Map<String, BatchResult<String>> outcomes = appDomain.assignUsersToRole(userIds, "Reader", archiveName);
+            System.out.println(outcomes);
+
+            // Outcomes are reported per user, in the order of the user IDs
+            assertEquals(userIds, new ArrayList<>(outcomes.keySet()));
+
+            assertFalse(outcomes.get("nobody").isSuccess());
+            assertTrue(outcomes.get("nobody").getFailure() instanceof InvalidParameterException);
+
+            assertTrue(outcomes.get("tester").isSuccess());
+            String participationDn = outcomes.get("tester").getValue();
+            assertTrue(adapter.existsAll(List.of(participationDn)).get(participationDn));
+
+            assertFalse(outcomes.get("ghost").isSuccess());
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testResolvingEffectiveAccess() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        Map<String, String> config = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             ApplicationDomain appDomain = new ApplicationDomain(config, adapter)) {
+
+            String groupName = "Editors" + System.currentTimeMillis();
+            String archiveName = "Access" + System.currentTimeMillis();
+
+            // tester is member of a global group...
+            adapter.createObject(new DefaultEntry(
+                    "ou=" + groupName + ",ou=Groups,dc=test",
+                    "objectClass: organizationalUnit",
+                    "ou: " + groupName
+            ));
+            adapter.createObject(new DefaultEntry(
+                    "cn=tester,ou=" + groupName + ",ou=Groups,dc=test",
+                    "objectClass: dsGroupMember",
+                    "cn: tester",
+                    "memberObject: uid=tester,ou=Members,dc=test"
+            ));
+
+            // ...participates directly in one role, and through the global group in another
+            appDomain.createArchive(archiveName);
+            appDomain.assignUserToRole("tester", "Reader", archiveName);
+            appDomain.assignGroupToRole(groupName, "Writer", archiveName);
+
+            EffectiveAccess access = appDomain.resolveEffectiveAccess("tester");
+            System.out.println(access);
+
+            assertEquals("tester", access.getUserId());
+            assertTrue(access.isMemberOf(groupName));
+            assertFalse(access.isMemberOf("Guests"));
+            assertEquals(Set.of("Reader", "Writer"), access.getRoles(archiveName));
+            assertTrue(access.hasRole("Reader", archiveName)); // directly
+            assertTrue(access.hasRole("Writer", archiveName)); // through the global group
+            assertFalse(access.hasRole("Administrator", archiveName));
+        }
+        catch (ConfigurationException | DirectoryException | InvalidParameterException | LdapException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testRefreshingAuthorizationIndex() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        Map<String, String> config = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             ApplicationDomain appDomain = new ApplicationDomain(config, adapter)) {
+
+            String groupName = "Auditors" + System.currentTimeMillis();
+            String archiveName = "Indexed" + System.currentTimeMillis();
+
+            AuthorizationIndex index = appDomain.createAuthorizationIndex();
+            assertFalse(index.isMember("tester", groupName));
+
+            // tester is member of a global group, participating in a role...
+            adapter.createObject(new DefaultEntry(
+                    "ou=" + groupName + ",ou=Groups,dc=test",
+                    "objectClass: organizationalUnit",
+                    "ou: " + groupName
+            ));
+            adapter.createObject(new DefaultEntry(
+                    "cn=tester,ou=" + groupName + ",ou=Groups,dc=test",
+                    "objectClass: dsGroupMember",
+                    "cn: tester",
+                    "memberObject: uid=tester,ou=Members,dc=test"
+            ));
+            appDomain.createArchive(archiveName);
+            appDomain.assignGroupToRole(groupName, "Auditor", archiveName);
+
+            // ...and participates directly in another role
+            appDomain.assignUserToRole("tester", "Reader", archiveName);
+
+            // The index is a snapshot, only seeing changes once refreshed
+            assertFalse(index.hasRole("tester", "Reader", archiveName));
+            index.refresh();
+            System.out.println(index);
+
+            assertTrue(index.isMember("tester", groupName));
+            assertFalse(index.isMember("nobody", groupName));
+            assertTrue(index.hasRole("tester", "Reader", archiveName)); // directly
+            assertTrue(index.hasRole("tester", "Auditor", archiveName)); // through the global group
+            assertFalse(index.hasRole("tester", "Administrator", archiveName));
+            assertFalse(index.hasRole("nobody", "Auditor", archiveName));
+        }
+        catch (ConfigurationException | DirectoryException | InvalidParameterException | LdapException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testCollectingMetrics() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See line 97 in LocalLdapServer.java
+                //
+                LdapAdapter.LDAP_METRICS, "true"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            SearchRequest req = adapter.searchForDn("uid=tester,ou=Members,dc=test", "(objectClass=*)", "uid");
+            assertNotNull(adapter.findObject(req));
+
+            LdapMetrics metrics = adapter.getMetrics();
+            assertEquals(1, metrics.getCount(LdapMetrics.Operation.FIND));
+            assertEquals(0, metrics.getErrorCount(LdapMetrics.Operation.FIND));
+
+            String exposition = metrics.toPrometheus();
+            System.out.println(exposition);
+            assertTrue(exposition.contains("ldap_operation_duration_seconds_count{operation=\"find\",scope=\"base\"} 1"));
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testCachingEntries() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See line 97 in LocalLdapServer.java
+                //
+                LdapAdapter.LDAP_CACHE_SIZE, "100"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            SearchRequest req = adapter.searchForDn("uid=tester,ou=Members,dc=test", "(objectClass=*)", "uid");
+            assertNotNull(adapter.findObject(req));
+            assertNotNull(adapter.findObject(req));
+
+            EntryCache cache = adapter.getEntryCache();
+            System.out.println(cache);
+            assertEquals(1, cache.getMissCount());
+            assertEquals(1, cache.getHitCount());
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testSubscribingToChanges() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            CountDownLatch added = new CountDownLatch(1);
+            try (Subscription subscription = adapter.subscribe("ou=Members,dc=test", SearchScope.ONELEVEL, "(objectClass=*)",
+                    new DirectoryChangeListener() {
+                        @Override
+                        public void entryAdded(Entry entry) {
+                            log.info("Added: {}", entry.getDn());
+                            added.countDown();
+                        }
+                    })) {
+
+                assertTrue(subscription.awaitSubscribed(10, TimeUnit.SECONDS));
+
+                adapter.createObject(new DefaultEntry(
+                        "uid=subscriber,ou=Members,dc=test",
+                        "objectClass: inetOrgPerson",
+                        "uid: subscriber",
+                        "cn: Subscriber",
+                        "sn: Subscriber"
+                ));
+
+                assertTrue(added.await(10, TimeUnit.SECONDS));
+            }
+        }
+        catch (ConfigurationException | DirectoryException | LdapException | InterruptedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testExpandingDnTemplates() {
+        try {
+            DnTemplate template = DnTemplate.compile("cn=%s,ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test", 3);
+            Dn dn = template.expand("Doe, John", "Reader", "Main");
+
+            assertEquals(7, dn.size());
+            assertEquals("Doe, John", dn.getRdn().getAva().getValue().getString());
+            assertEquals("ou=Reader,ou=Roles,ou=Main,ou=Archives,dc=test", dn.getParent().getName());
+        }
+        catch (ConfigurationException e) {
+            fail(e.getMessage());
+        }
+
+        try {
+            DnTemplate.compile("cn=%s,ou=%s,ou=Groups,dc=test", 1);
+            fail("Expected a mismatch between template and number of components");
+        }
+        catch (ConfigurationException expected) {
+            log.info("Expected: {}", expected.getMessage());
+        }
+    }
+
+    public void testFindingWindowOfUsers() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            SearchRequest req = adapter.shallowSearchWithFilter("ou=Members,dc=test", "(objectClass=inetOrgPerson)", "uid");
+            ResultWindow<Entry> window = adapter.findWindow(req, 0, 1, "uid");
+            System.out.println(window);
+
+            assertEquals(1, window.getItems().size());
+            assertTrue(window.getEstimatedTotal() >= 1);
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testCountingUsers() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            SearchRequest req = adapter.shallowSearchWithFilter("ou=Members,dc=test", "(objectClass=inetOrgPerson)", "*");
+            long count = adapter.countObjects(req);
+            System.out.println("Found " + count + " users");
+
+            assertTrue(count >= 1);
+            assertEquals(List.of("*"), req.getAttributes()); // request is left as it was
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    public void testBuildingNameLists() {
+        NameList names = NameList.builder(2).deduplicate()
+                .add("tester").add("Searcher").add("tester").add("admin")
+                .buildSorted();
+
+        assertEquals(List.of("Searcher", "admin", "tester"), names);
+        assertTrue(names.contains("admin"));
+        assertFalse(names.contains("Admin"));
+
+        try {
+            names.add("other");
+            fail("Expected a read-only list");
+        }
+        catch (UnsupportedOperationException expected) {
+            // as expected
+        }
+    }
+
+    public void testLoggingSlowOperations() {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See line 97 in LocalLdapServer.java
+                //
+                // Log everything (to the SlowOperationLog logger)
+                LdapAdapter.LDAP_SLOW_OPERATION_THRESHOLD, "1",
+                LdapAdapter.LDAP_SLOW_OPERATION_SAMPLE_RATE, "1.0"
+        );
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+
+            SearchRequest req = adapter.shallowSearchWithFilter("ou=Members,dc=test", "(objectClass=inetOrgPerson)", "uid");
+            assertEquals(1, adapter.findObjects(req).size());
+            assertEquals(1L, adapter.countObjects(req));
+            try (Stream<Entry> users = adapter.streamObjects(req)) {
+                assertEquals(1L, users.count());
+            }
+
+            req = adapter.searchForDn("uid=nobody,ou=Members,dc=test", "(objectClass=*)", "1.1");
+            assertNull(adapter.findObject(req));
+        }
+        catch (ConfigurationException | DirectoryException e) {
+            fail(e.getMessage());
+        }
+
+        Map<String, String> invalidConfig = new HashMap<>(adapterConfig);
+        invalidConfig.put(LdapAdapter.LDAP_SLOW_OPERATION_SAMPLE_RATE, "2");
+        try (LdapAdapter adapter = new LdapAdapter(invalidConfig)) {
+            fail("Expected sample rate to be rejected");
+        }
+        catch (ConfigurationException expected) {
+            // as expected
+        }
+    }
+
+    public void testRecordingFlightRecorderEvents() throws Exception {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See line 137 in LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See line 97 in LocalLdapServer.java
+        );
+
+        Path dump = Files.createTempFile("ldap", ".jfr");
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig);
+             Recording recording = new Recording()) {
+
+            recording.enable("org.example.DirectoryOperation").withThreshold(Duration.ZERO);
+            recording.enable("org.example.PoolBorrow").withThreshold(Duration.ZERO);
+            recording.enable("org.example.BusinessOperation").withThreshold(Duration.ZERO);
+            recording.start();
+
+            Map<String, String> templates = Map.of(
+                    ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test"
+            );
+            ApplicationDomain appDomain = new ApplicationDomain(templates, adapter);
+            assertNotNull(appDomain.findUserDn("tester"));
+
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            RecordedEvent search = events.stream()
+                    .filter(e -> "org.example.DirectoryOperation".equals(e.getEventType().getName()))
+                    .findFirst().orElse(null);
+            assertNotNull(search);
+            assertEquals("findUserDn", search.getString("businessOperation"));
+            assertEquals("SUCCESS", search.getString("resultCode"));
+            assertEquals(1L, search.getLong("entries"));
+
+            assertTrue(events.stream().anyMatch(e -> "org.example.BusinessOperation".equals(e.getEventType().getName())));
+            System.out.println("Recorded " + events.size() + " events, i.e. " + search);
+        }
+        finally {
+            Files.deleteIfExists(dump);
+        }
+    }
 }
@@ -0,0 +1,298 @@
+package org.example;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * An open loop load generator, issuing a weighted mix of operations at a fixed
+ * arrival rate, regardless of how fast earlier operations complete.
+ * <p/>
+ * Latencies are measured from the time each operation was scheduled to start, not
+ * from when it actually started, so time spent queueing behind slow operations is
+ * included (correcting for coordinated omission). Service times, measured from the
+ * actual start, are kept as well - the difference between the two shows queueing.
+ * <p/>
+ * Each operation runs on a thread of its own, taken from a cached pool, so that a
+ * slow directory shows up as growing latencies rather than as a lower arrival rate.
+ * While running, the connection pool of the adapter is sampled to show whether it
+ * is the bottleneck.
+ */
+public class LoadGenerator {
+
+    // Highest trackable latency, in nanoseconds
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    // Interval between samples of the connection pool, in milliseconds
+    private static final long SAMPLE_INTERVAL = 100L;
+
+    /**
+     * An operation in the mix, called with a (seeded) random number that may be
+     * used to pick arguments.
+     */
+    public interface Operation {
+        void call(int random) throws Exception;
+    }
+
+    private static final class Step {
+        private final String name;
+        private final int weight;
+        private final Operation operation;
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY, 3);
+        private final Histogram serviceTimes = new ConcurrentHistogram(MAX_LATENCY, 3);
+        private final AtomicLong failures = new AtomicLong();
+
+        private Step(String name, int weight, Operation operation) {
+            this.name = name;
+            this.weight = weight;
+            this.operation = operation;
+        }
+    }
+
+    private final LdapAdapter adapter;
+    private final List<Step> steps = new ArrayList<>();
+    private int totalWeight = 0;
+    private long seed = 4711L;
+
+    /**
+     * @param adapter the adapter whose connection pool is sampled (metrics need to be enabled)
+     */
+    public LoadGenerator(LdapAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    public LoadGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Adds an operation to the mix, issued in proportion to its weight.
+     */
+    public LoadGenerator add(String name, int weight, Operation operation) {
+        steps.add(new Step(name, weight, operation));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * Issues operations at a fixed rate for a period of time, and waits for all of
+     * them to complete.
+     * <p/>
+     * @param ratePerSecond arrival rate, operations per second
+     * @param duration how long to issue operations
+     * @param unit unit of duration
+     * @return a report of latencies, throughput and pool saturation
+     */
+    public Report run(double ratePerSecond, long duration, TimeUnit unit) throws InterruptedException {
+        if (steps.isEmpty()) {
+            throw new IllegalStateException("No operations in mix");
+        }
+
+        final long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        final long operations = (long) (ratePerSecond * unit.toSeconds(duration));
+        final Random random = new Random(seed);
+
+        final LdapMetrics metrics = adapter.getMetrics();
+        final long borrowsBefore = null != metrics ? metrics.getBorrowCount() : 0L;
+        final long borrowWaitBefore = null != metrics ? metrics.getBorrowWaitNanos() : 0L;
+        final PoolSampler sampler = new PoolSampler(metrics, adapter.getPoolMaxActive());
+
+        ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor();
+        sampling.scheduleAtFixedRate(sampler::sample, 0L, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+        long lag = 0L;
+        try {
+            for (long i = 0; i < operations; i++) {
+                final long intended = start + i * interval;
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                lag = Math.max(lag, now - intended);
+
+                final Step step = pick(random.nextInt(totalWeight));
+                final int argument = random.nextInt(Integer.MAX_VALUE);
+                workers.execute(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        step.operation.call(argument);
+                    }
+                    catch (Exception e) {
+                        step.failures.incrementAndGet();
+                    }
+                    long end = System.nanoTime();
+                    step.latencies.recordValue(Math.min(end - intended, MAX_LATENCY));
+                    step.serviceTimes.recordValue(Math.min(end - begin, MAX_LATENCY));
+                });
+            }
+        }
+        finally {
+            workers.shutdown();
+            workers.awaitTermination(MAX_LATENCY, TimeUnit.NANOSECONDS);
+            sampling.shutdownNow();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        long borrows = null != metrics ? metrics.getBorrowCount() - borrowsBefore : 0L;
+        long borrowWait = null != metrics ? metrics.getBorrowWaitNanos() - borrowWaitBefore : 0L;
+        return new Report(ratePerSecond, operations, elapsed, lag, steps, sampler, borrows, borrowWait);
+    }
+
+    private Step pick(int ticket) {
+        for (Step step : steps) {
+            ticket -= step.weight;
+            if (ticket < 0) {
+                return step;
+            }
+        }
+        return steps.get(steps.size() - 1);
+    }
+
+    /*
+     * Samples the connection pool, tracking how often it was fully used and how
+     * many threads were waiting for a connection.
+     */
+    private static final class PoolSampler {
+        private final LdapMetrics metrics;
+        private final int maxActive;
+        private int samples = 0;
+        private int saturated = 0;
+        private int maxWaiting = 0;
+        private long sumWaiting = 0L;
+
+        private PoolSampler(LdapMetrics metrics, int maxActive) {
+            this.metrics = metrics;
+            this.maxActive = maxActive;
+        }
+
+        private synchronized void sample() {
+            if (null == metrics) {
+                return;
+            }
+            int waiting = metrics.getWaitingForConnection();
+            samples++;
+            if (metrics.getActiveConnections() >= maxActive) {
+                saturated++;
+            }
+            maxWaiting = Math.max(maxWaiting, waiting);
+            sumWaiting += waiting;
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     */
+    public static final class Report {
+        private final double intendedRate;
+        private final long operations;
+        private final long elapsedNanos;
+        private final long maxSchedulingLag;
+        private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+        private final Map<String, Histogram> serviceTimes = new LinkedHashMap<>();
+        private final Map<String, Long> failures = new LinkedHashMap<>();
+        private final int poolMaxActive;
+        private final double poolSaturation;
+        private final int maxWaiting;
+        private final double meanWaiting;
+        private final long borrows;
+        private final long borrowWaitNanos;
+
+        private Report(
+                double intendedRate, long operations, long elapsedNanos, long maxSchedulingLag,
+                List<Step> steps, PoolSampler sampler, long borrows, long borrowWaitNanos
+        ) {
+            this.intendedRate = intendedRate;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.maxSchedulingLag = maxSchedulingLag;
+            for (Step step : steps) {
+                latencies.put(step.name, step.latencies);
+                serviceTimes.put(step.name, step.serviceTimes);
+                failures.put(step.name, step.failures.get());
+            }
+            synchronized (sampler) {
+                poolMaxActive = sampler.maxActive;
+                poolSaturation = sampler.samples > 0 ? (double) sampler.saturated / sampler.samples : 0.0;
+                maxWaiting = sampler.maxWaiting;
+                meanWaiting = sampler.samples > 0 ? (double) sampler.sumWaiting / sampler.samples : 0.0;
+            }
+            this.borrows = borrows;
+            this.borrowWaitNanos = borrowWaitNanos;
+        }
+
+        /**
+         * Returns the achieved throughput, in operations per second.
+         */
+        public double getThroughput() {
+            return operations / (elapsedNanos / 1.0e9);
+        }
+
+        /**
+         * Returns the latency (including queueing) of an operation at a percentile, in microseconds.
+         */
+        public double getLatency(String operation, double percentile) {
+            return latencies.get(operation).getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        public long getFailures(String operation) {
+            return failures.get(operation);
+        }
+
+        /**
+         * Returns the share (0..1) of samples where all connections of the pool were in use.
+         */
+        public double getPoolSaturation() {
+            return poolSaturation;
+        }
+
+        /**
+         * Returns the mean time spent waiting for a pooled connection, in microseconds.
+         */
+        public double getMeanBorrowWait() {
+            return borrows > 0 ? borrowWaitNanos / 1000.0 / borrows : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "Issued %d operations at %.0f/s: throughput %.1f/s (max scheduling lag %.1f ms)%n",
+                    operations, intendedRate, getThroughput(), maxSchedulingLag / 1.0e6));
+            out.append(String.format(Locale.ROOT, "%-24s%10s%12s%12s%12s%12s%10s%n",
+                    "latency (us)", "count", "p50", "p99", "p99.9", "service p50", "failures"));
+            for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+                Histogram latency = entry.getValue();
+                Histogram service = serviceTimes.get(entry.getKey());
+                out.append(String.format(Locale.ROOT, "%-24s%10d%12.1f%12.1f%12.1f%12.1f%10d%n",
+                        entry.getKey(), latency.getTotalCount(),
+                        latency.getValueAtPercentile(50.0) / 1000.0,
+                        latency.getValueAtPercentile(99.0) / 1000.0,
+                        latency.getValueAtPercentile(99.9) / 1000.0,
+                        service.getValueAtPercentile(50.0) / 1000.0,
+                        failures.get(entry.getKey())));
+            }
+            out.append(String.format(Locale.ROOT, "Connection pool (max %d): saturated %.0f%% of the time, waiting threads mean %.1f max %d, mean borrow wait %.1f us%n",
+                    poolMaxActive, 100.0 * poolSaturation, meanWaiting, maxWaiting, getMeanBorrowWait()));
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.example;
+
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a production like mix of {@link ApplicationDomain} operations at a fixed
+ * arrival rate (see {@link LoadGenerator}) against a generated directory, reporting
+ * latency percentiles per operation, throughput and connection pool saturation.
+ * <p/>
+ * These tests only run when the system property "load.tests" is set, i.e. using
+ * the 'load' profile:
+ * <pre>
+ *     mvn -P load test -Dload.rate=2000 -Dload.duration=30 -Dload.poolSize=8
+ * </pre>
+ */
+public class LoadTest extends TestCase {
+    private static Logger log = LogManager.getLogger(LoadTest.class);
+
+    private static LocalLdapServer server = null;
+    private static DirectoryGenerator generator = null;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        if (!Boolean.getBoolean("load.tests")) {
+            return;
+        }
+
+        try {
+            System.out.println();
+            server = new LocalLdapServer();
+            server.start();
+
+            generator = new DirectoryGenerator()
+                    .users(Integer.getInteger("load.users", 10000))
+                    .groups(500, 200)
+                    .archives(100, 4, 50);
+            server.load(generator);
+        }
+        catch (Exception e) {
+            String info = "Failed to initiate: " + e.getMessage();
+            System.out.println(info);
+            log.warn(info, e);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+
+        if (null != server)
+            server.stop();
+    }
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public LoadTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite(){
+        return new TestSuite(LoadTest.class);
+    }
+
+
+    public void testOperationMixAtFixedRate() throws Exception {
+        if (!Boolean.getBoolean("load.tests")) {
+            System.out.println("Skipping load tests (enable with -Dload.tests=true, or -P load)");
+            return;
+        }
+
+        double rate = Double.parseDouble(System.getProperty("load.rate", "1000"));
+        long duration = Long.getLong("load.duration", 20L);
+
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret", // See LocalLdapServer.java
+                //
+                // Size of connection pool, and metrics used to observe it
+                LdapAdapter.LDAP_POOL_MAX_ACTIVE, System.getProperty("load.poolSize", "8"),
+                LdapAdapter.LDAP_METRICS, "true"
+        );
+
+        Map<String, String> templates = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+
+        final int users = generator.getUsers();
+        final int groups = generator.getGroups();
+        final int archives = generator.getArchives();
+        final int roles = generator.getRolesPerArchive();
+
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+            final ApplicationDomain domain = new ApplicationDomain(templates, adapter);
+
+            // Mostly authorization checks, some listings and an occasional write
+            LoadGenerator load = new LoadGenerator(adapter)
+                    .add("findUserDn", 30, i -> domain.findUserDn(DirectoryGenerator.userId(1 + i % users)))
+                    .add("isMemberOfGlobalGroup", 30, i -> domain.isMemberOfGlobalGroup(
+                            DirectoryGenerator.userId(1 + i % users), DirectoryGenerator.groupName(1 + i % groups)))
+                    .add("resolveEffectiveAccess", 20, i -> domain.resolveEffectiveAccess(DirectoryGenerator.userId(1 + i % users)))
+                    .add("getUsersInRole", 10, i -> domain.getUsersInRole(
+                            DirectoryGenerator.roleName(1 + i % roles), DirectoryGenerator.archiveName(1 + i % archives)))
+                    .add("getUsersInGlobalGroup", 8, i -> domain.getUsersInGlobalGroup(DirectoryGenerator.groupName(1 + i % groups)))
+                    .add("assignUserToRole", 2, i -> domain.assignUserToRole(
+                            DirectoryGenerator.userId(1 + i % users), "loaded", DirectoryGenerator.archiveName(1 + i % archives)));
+
+            System.out.println("Issuing " + rate + " operations per second for " + duration + " seconds...");
+            LoadGenerator.Report report = load.run(rate, duration, TimeUnit.SECONDS);
+            System.out.println(report);
+            log.info("Load test:\n{}", report);
+
+            assertTrue(report.getThroughput() > 0.0);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.apache.directory.api.ldap.schema.extractor.impl.DefaultSchemaLdifExtr
 import org.apache.directory.api.ldap.schema.loader.LdifSchemaLoader;
 import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
 import org.apache.directory.server.constants.ServerDNConstants;
+import org.apache.directory.server.core.api.CoreSession;
 import org.apache.directory.server.core.api.DirectoryService;
 import org.apache.directory.server.core.api.partition.Partition;
 import org.apache.directory.server.core.api.schema.SchemaPartition;
@@ -74,12 +75,37 @@ public class LocalLdapServer {
 
 
 
+        //-------------------------------------------------------------
+        // Schema
+        //-------------------------------------------------------------
+
+        // Group members and role participants (in the "other" schema)
+        addEntry("m-oid=1.3.6.1.4.1.18060.0.4.3.2.1,ou=attributeTypes,cn=other,ou=schema", entry -> {
+            entry.add("objectClass", "top", "metaTop", "metaAttributeType");
+            entry.add("m-oid", "1.3.6.1.4.1.18060.0.4.3.2.1");
+            entry.add("m-name", "memberObject");
+            entry.add("m-description", "The distinguished name of a group member or role participant");
+            entry.add("m-equality", "distinguishedNameMatch");
+            entry.add("m-syntax", "1.3.6.1.4.1.1466.115.121.1.12"); // DN
+        });
+
+        addEntry("m-oid=1.3.6.1.4.1.18060.0.4.3.3.1,ou=objectClasses,cn=other,ou=schema", entry -> {
+            entry.add("objectClass", "top", "metaTop", "metaObjectClass");
+            entry.add("m-oid", "1.3.6.1.4.1.18060.0.4.3.3.1");
+            entry.add("m-name", "dsGroupMember");
+            entry.add("m-description", "A member of a group, or a participant in a role");
+            entry.add("m-supObjectClass", "top");
+            entry.add("m-typeObjectClass", "STRUCTURAL");
+            entry.add("m-must", "cn");
+            entry.add("m-may", "memberObject");
+        });
+
         //-------------------------------------------------------------
         // Objects
         //-------------------------------------------------------------
 
-        // Establish test partition
-        Partition partition = addPartition(service, "test", "dc=test");
+        // Establish test partition, indexing attributes used when searching
+        addPartition(service, "test", "dc=test", "objectClass", "ou", "cn", "uid", "memberObject");
 
         // Inject dc=test entry into the test partition (created earlier)
         addEntry("dc=test", entry -> {
@@ -113,6 +139,12 @@ public class LocalLdapServer {
             entry.add("ou", "Guests");
         });
 
+        // --- Archives ---
+        addEntry("ou=Archives,dc=test", entry -> {
+            entry.add("objectClass", "organizationalUnit");
+            entry.add("ou", "Archives");
+        });
+
         // --- Users in the system ---
         addEntry("ou=Members,dc=test", entry -> {
             entry.add("objectClass", "organizationalUnit");
@@ -128,10 +160,6 @@ public class LocalLdapServer {
             entry.add("userPassword", "{SHA}Ho1UWt+Ko+FWSbW26BviIp7iaGk=".getBytes()); // "notsosecret"
         });
 
-
-        // Index attributes in the partition
-        addIndex((JdbmPartition) partition, "objectClass", "ou", "cn", "uid", "memberObject");
-
         try {
             server = new LdapServer();
             int serverPort = 10389;
@@ -240,13 +268,16 @@ public class LocalLdapServer {
         s.setSchemaPartition(schemaPartition);
     }
 
-    private static Partition addPartition(DirectoryService s, String partitionId, String partitionDN) throws Exception {
+    private static Partition addPartition(DirectoryService s, String partitionId, String partitionDN, String... indexedAttrs) throws Exception {
 
         // Create a new partition
         JdbmPartition partition = new JdbmPartition(s.getSchemaManager(), s.getDnFactory());
         partition.setId(partitionId);
         partition.setPartitionPath(new File(s.getInstanceLayout().getPartitionsDirectory(), partitionId).toURI());
         partition.setSuffixDn(new Dn(partitionDN));
+
+        // Indices have to be in place before the partition is initialized (when added)
+        addIndex(partition, indexedAttrs);
         s.addPartition(partition);
 
         return partition;
@@ -274,6 +305,34 @@ public class LocalLdapServer {
         }
     }
 
+    /**
+     * Loads generated entries into the (started) directory, bypassing the network
+     * protocol and the existence checks of {@link #addEntry}. Parents are expected to
+     * be generated ahead of their children.
+     * <p/>
+     * @return the number of entries loaded
+     */
+    public long load(DirectoryGenerator generator) throws Exception {
+        if (null == service || !service.isStarted()) {
+            throw new IllegalStateException("LDAP service is not started");
+        }
+
+        final CoreSession session = service.getAdminSession();
+        final long[] count = { 0L };
+
+        long start = System.currentTimeMillis();
+        generator.generate((dn, initializer) -> {
+            Entry entry = service.newEntry(new Dn(dn));
+            initializer.initialize(entry);
+            session.add(entry);
+            if (++count[0] % 10000 == 0) {
+                log.debug("Loaded {} entries", count[0]);
+            }
+        });
+        log.info("Loaded {} entries in {} ms", count[0], System.currentTimeMillis() - start);
+        return count[0];
+    }
+
     interface EntryInitializer {
         void initialize(Entry entry) throws LdapException;
     }
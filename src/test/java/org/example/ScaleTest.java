@@ -0,0 +1,178 @@
+package org.example;
+
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how the latency of {@link ApplicationDomain} operations grows with the size
+ * of the directory, using directories generated by {@link DirectoryGenerator}.
+ * <p/>
+ * Loading large directories takes a while, so these tests only run when the
+ * system property "scale.tests" is set, i.e. using the 'scale' profile:
+ * <pre>
+ *     mvn -P scale test
+ * </pre>
+ * Directory sizes (number of users) are taken from the system property "scale.sizes",
+ * i.e. -Dscale.sizes=1000,10000,100000
+ */
+public class ScaleTest extends TestCase {
+    private static Logger log = LogManager.getLogger(ScaleTest.class);
+
+    private static final int WARMUP = 50;
+    private static final int SAMPLES = 200;
+
+    // Point lookups may not grow more than this between the smallest and the largest directory
+    private static final double MAX_LOOKUP_GROWTH = 10.0;
+
+    private interface Operation {
+        Object call(int i) throws Exception;
+    }
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ScaleTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite(){
+        return new TestSuite(ScaleTest.class);
+    }
+
+
+    public void testLatencyGrowthWithDirectorySize() throws Exception {
+        if (!Boolean.getBoolean("scale.tests")) {
+            System.out.println("Skipping scale tests (enable with -Dscale.tests=true, or -P scale)");
+            return;
+        }
+
+        int[] sizes = Arrays.stream(System.getProperty("scale.sizes", "1000,10000,100000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .sorted()
+                .toArray();
+
+        // operation -> median latency (in microseconds) per size
+        Map<String, double[]> medians = new LinkedHashMap<>();
+
+        for (int s = 0; s < sizes.length; s++) {
+            int users = sizes[s];
+            DirectoryGenerator generator = new DirectoryGenerator()
+                    .users(users)
+                    .groups(Math.max(1, users / 20), Math.max(1, users / 50))
+                    .archives(Math.max(1, users / 100), 4, Math.max(1, Math.min(50, users / 20)));
+
+            LocalLdapServer server = new LocalLdapServer();
+            try {
+                server.start();
+                long loaded = server.load(generator);
+                System.out.println("Loaded " + loaded + " entries (" + users + " users, " + generator.getGroups()
+                        + " groups, " + generator.getArchives() + " archives)");
+
+                for (Map.Entry<String, Double> median : measure(generator).entrySet()) {
+                    medians.computeIfAbsent(median.getKey(), k -> new double[sizes.length])[s] = median.getValue();
+                }
+            }
+            finally {
+                server.stop();
+            }
+        }
+
+        // Report
+        StringBuilder report = new StringBuilder(String.format("%-24s", "median (us) / users"));
+        for (int size : sizes) {
+            report.append(String.format("%12d", size));
+        }
+        report.append(String.format("%10s%n", "growth"));
+        for (Map.Entry<String, double[]> row : medians.entrySet()) {
+            double[] latencies = row.getValue();
+            report.append(String.format("%-24s", row.getKey()));
+            for (double latency : latencies) {
+                report.append(String.format("%12.1f", latency));
+            }
+            report.append(String.format("%9.1fx%n", latencies[latencies.length - 1] / latencies[0]));
+        }
+        System.out.println(report);
+        log.info("Latency growth with directory size:\n{}", report);
+
+        // Point lookups are served through indices, and should not grow (much) with size
+        if (sizes.length > 1 && sizes[sizes.length - 1] >= 100 * sizes[0]) {
+            for (String lookup : new String[] {"findUserDn", "archiveExists", "globalGroupExists", "isMemberOfGlobalGroup"}) {
+                double[] latencies = medians.get(lookup);
+                double growth = latencies[latencies.length - 1] / latencies[0];
+                assertTrue(lookup + " grew " + growth + " times", growth < MAX_LOOKUP_GROWTH);
+            }
+        }
+    }
+
+    private Map<String, Double> measure(DirectoryGenerator generator) throws Exception {
+        Map<String, String> adapterConfig = Map.of(
+                // Where to locate directory service
+                LdapAdapter.LDAP_HOST, "localhost",
+                LdapAdapter.LDAP_PORT, "10389", // See LocalLdapServer.java
+                //
+                // How to bind to directory service in order to search for users, etc.
+                LdapAdapter.LDAP_READER_DN, "uid=Searcher,dc=test",
+                LdapAdapter.LDAP_READER_CREDENTIALS, "notsosecret" // See LocalLdapServer.java
+        );
+
+        Map<String, String> templates = Map.of(
+                ApplicationDomain.LDAP_USER_DN_TEMPLATE, "uid=%s,ou=Members,dc=test",
+                ApplicationDomain.LDAP_ROLE_DN_TEMPLATE, "ou=%s,ou=Roles,ou=%s,ou=Archives,dc=test"
+        );
+
+        final int users = generator.getUsers();
+        final int groups = generator.getGroups();
+        final int archives = generator.getArchives();
+
+        Map<String, Double> medians = new LinkedHashMap<>();
+        try (LdapAdapter adapter = new LdapAdapter(adapterConfig)) {
+            final ApplicationDomain domain = new ApplicationDomain(templates, adapter);
+
+            Map<String, Operation> operations = new LinkedHashMap<>();
+            operations.put("findUserDn", i -> domain.findUserDn(DirectoryGenerator.userId(1 + i % users)));
+            operations.put("archiveExists", i -> domain.archiveExists(DirectoryGenerator.archiveName(1 + i % archives)));
+            operations.put("globalGroupExists", i -> domain.globalGroupExists(DirectoryGenerator.groupName(1 + i % groups)));
+            operations.put("isMemberOfGlobalGroup", i -> domain.isMemberOfGlobalGroup(DirectoryGenerator.userId(1 + i % users), DirectoryGenerator.groupName(1)));
+            operations.put("getUsersInGlobalGroup", i -> domain.getUsersInGlobalGroup(DirectoryGenerator.groupName(1)));
+            operations.put("countUsersInGlobalGroup", i -> domain.countUsersInGlobalGroup(DirectoryGenerator.groupName(1)));
+            operations.put("getUsersInRole", i -> domain.getUsersInRole(DirectoryGenerator.roleName(1), DirectoryGenerator.archiveName(1 + i % archives)));
+            operations.put("resolveEffectiveAccess", i -> domain.resolveEffectiveAccess(DirectoryGenerator.userId(1 + i % users)));
+            operations.put("getGlobalGroups(0,50)", i -> domain.getGlobalGroups(0, 50));
+            operations.put("getArchives(0,50)", i -> domain.getArchives(0, 50));
+
+            Random random = new Random(4711L);
+            for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+                Operation call = operation.getValue();
+                for (int i = 0; i < WARMUP; i++) {
+                    call.call(random.nextInt(Integer.MAX_VALUE));
+                }
+
+                long[] samples = new long[SAMPLES];
+                for (int i = 0; i < SAMPLES; i++) {
+                    int arg = random.nextInt(Integer.MAX_VALUE);
+                    long start = System.nanoTime();
+                    call.call(arg);
+                    samples[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(samples);
+                medians.put(operation.getKey(), samples[SAMPLES / 2] / 1000.0);
+            }
+        }
+        return medians;
+    }
+}